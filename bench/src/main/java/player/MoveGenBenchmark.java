@@ -0,0 +1,124 @@
+/* MoveGenBenchmark.java */
+
+package player;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ *  Benchmarks the Board operations the search spends its time in, over the corpus
+ *  positions of one phase of the game. Each invocation covers every position of the
+ *  phase, so scores are per corpus sweep.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoveGenBenchmark {
+
+	@Param({"add", "step"})
+	public String phase; //Corpus tag of the positions used
+
+	Board[] boards;
+	int[] colors; //Player to move in each position
+	Move[][] candidates; //Per position, every move of the right kind, legal or not
+	int[] buffer;
+
+	@Setup
+	public void setUp() {
+		List<Move[]> positions = Positions.load(phase);
+		boards = new Board[positions.size()];
+		colors = new int[positions.size()];
+		candidates = new Move[positions.size()][];
+		for(int i = 0; i < boards.length; i++) {
+			boards[i] = Positions.board(positions.get(i));
+			colors[i] = Positions.toMove(positions.get(i));
+			candidates[i] = candidates(boards[i], colors[i]);
+		}
+		buffer = new int[Board.MAX_MOVES];
+	}
+
+	/**
+	 * Returns every ADD move on the board if color still has chips to add, or else
+	 * every STEP move from one of color's chips to any square.
+	 */
+	private static Move[] candidates(Board b, int color) {
+		PieceSet mine = color == Board.WHITE ? b.white : b.black;
+		int n = Board.SIZE * Board.SIZE;
+		if(mine.getSize() < PieceSet.MAX_PIECES) {
+			Move[] moves = new Move[n];
+			for(int sq = 0; sq < n; sq++) {
+				moves[sq] = new Move(sq / Board.SIZE, sq % Board.SIZE);
+			}
+			return moves;
+		}
+		Move[] moves = new Move[mine.getSize() * n];
+		for(int i = 0; i < mine.getSize(); i++) {
+			int[] from = mine.getPiece(i).getSpace().position();
+			for(int sq = 0; sq < n; sq++) {
+				moves[i*n + sq] = new Move(sq / Board.SIZE, sq % Board.SIZE, from[0], from[1]);
+			}
+		}
+		return moves;
+	}
+
+	@Benchmark
+	public void generateAllMoves(Blackhole bh) {
+		for(int i = 0; i < boards.length; i++) {
+			bh.consume(boards[i].generateAllMoves(colors[i]));
+		}
+	}
+
+	@Benchmark
+	public int generateMoves() {
+		int total = 0;
+		for(int i = 0; i < boards.length; i++) {
+			total += boards[i].generateMoves(colors[i], buffer);
+		}
+		return total;
+	}
+
+	@Benchmark
+	public int isLegalMove() {
+		int legal = 0;
+		for(int i = 0; i < boards.length; i++) {
+			for(Move m : candidates[i]) {
+				if(boards[i].isLegalMove(m, colors[i])) {
+					legal++;
+				}
+			}
+		}
+		return legal;
+	}
+
+	@Benchmark
+	public int evaluate() {
+		int total = 0;
+		for(Board b : boards) {
+			total += b.evaluate();
+		}
+		return total;
+	}
+
+	@Benchmark
+	public void duplicate(Blackhole bh) {
+		for(Board b : boards) {
+			bh.consume(b.duplicate());
+		}
+	}
+}
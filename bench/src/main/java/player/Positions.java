@@ -0,0 +1,102 @@
+/* Positions.java */
+
+package player;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *  The benchmark corpus, read from positions.txt. Each position is the list of moves
+ *  of a game from the start, White first, and is tagged with the part of the game it
+ *  comes from: add, step, nearwon or won. Moves are written as Perft reads them.
+ */
+final class Positions {
+
+	private static final String CORPUS = "/positions.txt";
+
+	private Positions() {
+	}
+
+	/**
+	 * Returns the move lists of every position in the corpus tagged tag.
+	 */
+	static List<Move[]> load(String tag) {
+		List<Move[]> positions = new ArrayList<Move[]>();
+		InputStream in = Positions.class.getResourceAsStream(CORPUS);
+		if(in == null) {
+			throw new IllegalStateException("Missing benchmark corpus " + CORPUS);
+		}
+		try(BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+			String line;
+			while((line = reader.readLine()) != null) {
+				line = line.trim();
+				if(line.isEmpty() || line.startsWith("#")) {
+					continue;
+				}
+				String[] tokens = line.split("\\s+");
+				if(!tokens[0].equals(tag)) {
+					continue;
+				}
+				Move[] moves = new Move[tokens.length - 1];
+				for(int i = 1; i < tokens.length; i++) {
+					moves[i-1] = Perft.parse(tokens[i]);
+				}
+				positions.add(moves);
+			}
+		} catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		if(positions.isEmpty()) {
+			throw new IllegalArgumentException("No positions tagged " + tag);
+		}
+		return positions;
+	}
+
+	/**
+	 * Returns the player to move after moves; White moves first.
+	 */
+	static int toMove(Move[] moves) {
+		return moves.length % 2 == 0 ? Board.WHITE : Board.BLACK;
+	}
+
+	/**
+	 * Returns a new board with moves played on it.
+	 */
+	static Board board(Move[] moves) {
+		Board b = new Board();
+		b.addPieceSet(new PieceSet(Board.BLACK, b));
+		b.addPieceSet(new PieceSet(Board.WHITE, b));
+		int color = Board.WHITE;
+		for(Move m : moves) {
+			if(!b.makeMove(m, color)) {
+				throw new IllegalStateException("Illegal move " + m + " in benchmark corpus");
+			}
+			color = 1 - color;
+		}
+		return b;
+	}
+
+	/**
+	 * Returns a MachinePlayer for the player to move after moves, searching to
+	 * searchDepth, that has seen moves played.
+	 */
+	static MachinePlayer player(Move[] moves, int searchDepth) {
+		int me = toMove(moves);
+		MachinePlayer player = new MachinePlayer(me, searchDepth);
+		int color = Board.WHITE;
+		for(Move m : moves) {
+			boolean legal = color == me ? player.forceMove(m) : player.opponentMove(m);
+			if(!legal) {
+				throw new IllegalStateException("Illegal move " + m + " in benchmark corpus");
+			}
+			color = 1 - color;
+		}
+		return player;
+	}
+}
@@ -0,0 +1,66 @@
+/* SearchBenchmark.java */
+
+package player;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ *  Benchmarks MachinePlayer.chooseMove() at a fixed search depth over the corpus
+ *  positions of one phase of the game. Every invocation gets fresh players, so each
+ *  search starts with an empty transposition table and no history, as the first
+ *  move of a game does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class SearchBenchmark {
+
+	@Param({"2", "3", "4", "5"})
+	public int depth; //searchDepth given to each MachinePlayer
+
+	@Param({"add", "step"})
+	public String phase; //Corpus tag of the positions used
+
+	List<Move[]> positions;
+	MachinePlayer[] players;
+
+	@Setup(Level.Trial)
+	public void load() {
+		positions = Positions.load(phase);
+		players = new MachinePlayer[positions.size()];
+	}
+
+	// Building a player replays the game and allocates its table; both are cheap next
+	// to a search, so per-invocation setup does not distort the score.
+	@Setup(Level.Invocation)
+	public void newPlayers() {
+		for(int i = 0; i < players.length; i++) {
+			players[i] = Positions.player(positions.get(i), depth);
+		}
+	}
+
+	@Benchmark
+	public void chooseMove(Blackhole bh) {
+		for(MachinePlayer p : players) {
+			bh.consume(p.chooseMove());
+		}
+	}
+}
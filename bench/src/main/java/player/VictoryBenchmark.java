@@ -0,0 +1,60 @@
+/* VictoryBenchmark.java */
+
+package player;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ *  Benchmarks network detection for both players over positions where a network is
+ *  on the board (won) or one move away (nearwon), the two cases where the search
+ *  cannot rule a network out cheaply.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VictoryBenchmark {
+
+	@Param({"won", "nearwon"})
+	public String phase; //Corpus tag of the positions used
+
+	Board[] boards;
+
+	@Setup
+	public void setUp() {
+		List<Move[]> positions = Positions.load(phase);
+		boards = new Board[positions.size()];
+		for(int i = 0; i < boards.length; i++) {
+			boards[i] = Positions.board(positions.get(i));
+		}
+	}
+
+	@Benchmark
+	public int victory() {
+		int networks = 0;
+		for(Board b : boards) {
+			if(b.black.victory()) {
+				networks++;
+			}
+			if(b.white.victory()) {
+				networks++;
+			}
+		}
+		return networks;
+	}
+}
@@ -6,13 +6,95 @@ import list.*;
 
 /*
  * Represents the full game board for the game of Network to be used by a MachinePlayer.
+ * Each color's pieces are stored as a 64-bit occupancy mask; square (x,y) maps to bit x*SIZE+y.
  */
 public class Board {
 	
 	public static final int SIZE = 8;
 	public static final int BLACK = 0;
 	public static final int WHITE = 1;
-	Space[][] board; //8x8 array of spaces
+	public static final int MAX_MOVES = PieceSet.MAX_PIECES * SIZE * SIZE; //More than any position has
+	
+	static final long CORNERS; //Dead corner squares; never usable
+	static final long[] START_GOAL = new long[2]; //Start goal for each color (top for black, left for white)
+	static final long[] END_GOAL = new long[2]; //End goal for each color (bottom for black, right for white)
+	static final long[] OFF_LIMITS = new long[2]; //Squares each color may never occupy (rules 1 and 2)
+	static final long[][] ZOBRIST = new long[2][SIZE*SIZE]; //Random key for each color and square
+	static final long ZOBRIST_WHITE; //Key for white to move
+	/*
+	 * The rules are unchanged by mirroring the board left to right or top to bottom,
+	 * since each goal maps onto itself or its partner. Symmetry s maps square sq to
+	 * sq ^ MIRRORS[s]: 0 is the identity, 1 mirrors x, 2 mirrors y and 3 does both.
+	 */
+	static final int SYMMETRIES = 4;
+	static final int[] MIRRORS = {0, (SIZE-1) * SIZE, SIZE-1, SIZE*SIZE-1};
+	/*
+	 * RAYS[dir][sq] holds the squares strictly beyond sq in direction dir, where directions
+	 * are numbered in the order run = -1..1, rise = -1..1 with (0,0) left out. Direction
+	 * 7-dir is the opposite of dir; directions 0-3 run towards lower squares and 4-7 towards
+	 * higher ones.
+	 */
+	static final long[][] RAYS = new long[8][SIZE*SIZE];
+	static final long[] NEIGHBORS = new long[SIZE*SIZE]; //The up to 8 squares touching each square
+	
+	static {
+		long corners = 0;
+		for(int i = 0; i<SIZE; i++){
+			for(int j = 0; j<SIZE; j++){
+				long bit = bit(i, j);
+				boolean xEdge = i == 0 || i == SIZE-1;
+				boolean yEdge = j == 0 || j == SIZE-1;
+				if(xEdge && yEdge){
+					corners |= bit;
+				} else if(j == 0){
+					START_GOAL[BLACK] |= bit;
+				} else if(j == SIZE-1){
+					END_GOAL[BLACK] |= bit;
+				} else if(i == 0){
+					START_GOAL[WHITE] |= bit;
+				} else if(i == SIZE-1){
+					END_GOAL[WHITE] |= bit;
+				}
+			}
+		}
+		CORNERS = corners;
+		OFF_LIMITS[BLACK] = CORNERS | START_GOAL[WHITE] | END_GOAL[WHITE];
+		OFF_LIMITS[WHITE] = CORNERS | START_GOAL[BLACK] | END_GOAL[BLACK];
+		java.util.Random random = new java.util.Random(61);
+		for(int i = 0; i<SIZE*SIZE; i++){
+			ZOBRIST[BLACK][i] = random.nextLong();
+			ZOBRIST[WHITE][i] = random.nextLong();
+		}
+		ZOBRIST_WHITE = random.nextLong();
+		int dir = 0;
+		for(int run = -1; run <= 1; run++){
+			for(int rise = -1; rise <= 1; rise++){
+				if(run != 0 || rise != 0){
+					for(int i = 0; i<SIZE; i++){
+						for(int j = 0; j<SIZE; j++){
+							int x = i + run;
+							int y = j + rise;
+							if(isValidLocation(x, y)){
+								NEIGHBORS[square(i, j)] |= bit(x, y);
+							}
+							while(isValidLocation(x, y)){
+								RAYS[dir][square(i, j)] |= bit(x, y);
+								x += run;
+								y += rise;
+							}
+						}
+					}
+					dir++;
+				}
+			}
+		}
+	}
+	
+	long[] chips; //Occupancy mask for each color, indexed by BLACK/WHITE; bit square(x,y) set iff occupied
+	Space[] spaces; //One shared Space per square, indexed by square(x,y)
+	long[] keys; //Zobrist hash of the pieces under each symmetry; kept up to date by makeMove and undoMove
+	long[] links; //For each occupied square, the squares of the same-color pieces visible from it
+	int[] linkCount; //For each color, the total of its pieces' connections (each pair counted twice)
 	PieceSet black;
 	PieceSet white;
 
@@ -29,28 +111,64 @@ public class Board {
 	 * @param w
 	 */
 	public Board(PieceSet b, PieceSet w) {
-		board = new Space[SIZE][SIZE];
-		for(int i = 0; i<board.length; i++){ //Iterate horizontally
-			for(int j = 0; j<board[0].length; j++){ //Iterate vertically
-				board[i][j] = new Space(i, j, this);
+		chips = new long[2];
+		keys = new long[SYMMETRIES];
+		links = new long[SIZE*SIZE];
+		linkCount = new int[2];
+		spaces = new Space[SIZE*SIZE];
+		for(int i = 0; i<SIZE; i++){ //Iterate horizontally
+			for(int j = 0; j<SIZE; j++){ //Iterate vertically
+				spaces[square(i, j)] = new Space(i, j, this);
 			}
 		}
-		black = b;
-		white = w;
+		if(b != null){
+			addPieceSet(b);
+		}
+		if(w != null){
+			addPieceSet(w);
+		}
 	}
 	
 	/**
 	 * Adds a PieceSet to this board. Returns true if successfully added, false otherwise.
+	 * The occupancy mask for the set's color is rebuilt from its pieces.
 	 */
 	public boolean addPieceSet(PieceSet ps){
 		if (ps.getColor() == WHITE){
 			white = ps;
-			return true;
 		} else if (ps.getColor() == BLACK){
 			black = ps;
-			return true;
+		} else {
+			return false;
 		}
-		return false;
+		ps.setBoard(this);
+		chips[ps.getColor()] = 0;
+		for(int i = 0; i<ps.getSize(); i++){
+			int[] pos = ps.getPiece(i).getSpace().position();
+			chips[ps.getColor()] |= bit(pos[0], pos[1]);
+		}
+		for(int s = 0; s < SYMMETRIES; s++){
+			keys[s] = 0;
+			for(int i = 0; i<SIZE*SIZE; i++){
+				if((chips[BLACK] & (1L << i)) != 0){
+					keys[s] ^= ZOBRIST[BLACK][i ^ MIRRORS[s]];
+				} else if((chips[WHITE] & (1L << i)) != 0){
+					keys[s] ^= ZOBRIST[WHITE][i ^ MIRRORS[s]];
+				}
+			}
+		}
+		linkCount[BLACK] = 0;
+		linkCount[WHITE] = 0;
+		for(int i = 0; i<SIZE*SIZE; i++){
+			links[i] = 0;
+			for(int c = BLACK; c <= WHITE; c++){
+				if((chips[c] & (1L << i)) != 0){
+					links[i] = connections(i, c);
+					linkCount[c] += Long.bitCount(links[i]);
+				}
+			}
+		}
+		return true;
 	}
 	
 	
@@ -59,7 +177,16 @@ public class Board {
 	 * @param m		Move to be recorded.
 	 * @return		True if move was successfully performed; false otherwise.
 	 */
-	public boolean makeMove(Move m, int color){		
+	public boolean makeMove(Move m, int color){
+		return makeMove(encode(m), color);
+	}
+	
+	/**
+	 * Performs the move encoded (as by encode()) by the parameter. Changes the board accordingly.
+	 * @param code	encoded move to be recorded.
+	 * @return		True if move was successfully performed; false otherwise.
+	 */
+	public boolean makeMove(int code, int color){
 		PieceSet player = null;
 		switch(color) {
 			case BLACK:	player = black;
@@ -67,131 +194,221 @@ public class Board {
 			case WHITE:	player = white;
 						break;
 		}
-		if(m.moveKind == Move.QUIT) {
+		int kind = code >>> 12;
+		int to = (code >>> 6) & 0x3F;
+		int from = code & 0x3F;
+		if(kind == Move.QUIT) {
 			return true;
-		} else if(m.moveKind == Move.ADD) {
-			player.addPiece(new Piece(player, new Space(m.x1, m.y1, this)));
-			return board[m.x1][m.y1].place(color);
-		} else if(m.moveKind == Move.STEP){
-			if(board[m.x2][m.y2].type() == color){
-				player.getPiece(new Space(m.x2, m.y2)).move(new Space(m.x1, m.y1, this));
-				return board[m.x1][m.y1].place(board[m.x2][m.y2].remove()); //Removes the previous piece and passes the removed piece as the parameter to Space.place()
+		} else if(kind == Move.ADD) {
+			if((occupied() & (1L << to)) == 0){
+				player.addPiece(spaces[to]);
+				placeChip(to, color);
+				return true;
+			}
+		} else if(kind == Move.STEP){
+			if((chips[color] & (1L << from)) != 0 && (occupied() & (1L << to)) == 0){
+				player.getPiece(spaces[from]).move(spaces[to]);
+				liftChip(from, color);
+				placeChip(to, color);
+				return true;
 			}
 		}
-		return false; //Something wrong with m
+		return false; //Something wrong with the move
 	}
 	
+	/**
+	 * Reverses the Move specified by the parameter, restoring the board to its state before
+	 * makeMove(m, color). m must be the most recent move made on this board that has not
+	 * already been undone.
+	 * @param m		Move to be reversed.
+	 * @param color	color of the player who made m
+	 */
+	public void undoMove(Move m, int color){
+		undoMove(encode(m), color);
+	}
 	
 	/**
-	 * CHECK WHETHER A GIVEN MOVE IS LEGAL
+	 * Reverses the encoded move specified by the parameter; see undoMove(Move, int).
+	 * @param code	encoded move to be reversed.
+	 * @param color	color of the player who made the move
 	 */
+	public void undoMove(int code, int color){
+		PieceSet player = null;
+		switch(color) {
+			case BLACK:	player = black;
+						break;
+			case WHITE:	player = white;
+						break;
+		}
+		int kind = code >>> 12;
+		int to = (code >>> 6) & 0x3F;
+		int from = code & 0x3F;
+		if(kind == Move.ADD) {
+			player.removePiece(spaces[to]);
+			liftChip(to, color);
+		} else if(kind == Move.STEP) {
+			player.getPiece(spaces[to]).move(spaces[from]);
+			liftChip(to, color);
+			placeChip(from, color);
+		}
+	}
 	
 	/**
-	 * Gets the 8 neighboring spaces to the specified space.
-	 * @param x	x-coordinate of center space
-	 * @param y	y-coordinate of center space
-	 * @return	array of neighboring Spaces
-	 */
-	private Space[] getNeighborSpaces(int x, int y){
-	  Space[] neighbors = new Space[8];
-	  try{
-		  neighbors[0] = board[x][y-1]; //North
-		  neighbors[1] = board[x+1][y-1]; //Northeast
-		  neighbors[2] = board[x+1][y]; //East
-		  neighbors[3] = board[x+1][y+1]; //Southeast
-		  neighbors[4] = board[x][y+1]; //South
-		  neighbors[5] = board[x-1][y+1]; //Southwest
-		  neighbors[6] = board[x-1][y];  //West
-		  neighbors[7] = board[x-1][y-1]; //Northwest
-		  return neighbors;
-	  } catch(ArrayIndexOutOfBoundsException e){
-		  if(x == 0){ //Along west wall;
-			  neighbors[0] = board[x][y-1]; //North
-			  neighbors[1] = board[x+1][y-1]; //Northeast
-			  neighbors[2] = board[x+1][y]; //East
-			  neighbors[3] = board[x+1][y+1]; //Southeast
-			  neighbors[4] = board[x][y+1]; //South
-			  neighbors[5] = null; //Southwest
-			  neighbors[6] = null; //West
-			  neighbors[7] = null; //Northwest
-		  }
-		  if(y == 0){ //Along north wall
-			  neighbors[0] = null;
-			  neighbors[1] = null;
-			  neighbors[2] = board[x+1][y];
-			  neighbors[3] = board[x+1][y+1];
-			  neighbors[4] = board[x][y+1];
-			  neighbors[5] = board[x-1][y+1];
-			  neighbors[6] = board[x-1][y];
-			  neighbors[7] = null;
-		  }
-		  if(y == SIZE-1){ //Along south wall
-			  neighbors[0] = board[x][y-1];
-			  neighbors[1] = board[x+1][y-1];
-			  neighbors[2] = board[x+1][y];
-			  neighbors[3] = null;
-			  neighbors[4] = null;
-			  neighbors[5] = null;
-			  neighbors[6] = board[x-1][y];
-			  neighbors[7] = board[x-1][y-1];
-		  }
-		  if(x == SIZE-1){ //Along east wall
-			  neighbors[0] = board[x][y-1];
-			  neighbors[1] = null;
-			  neighbors[2] = null;
-			  neighbors[3] = null;
-			  neighbors[4] = board[x][y+1];
-			  neighbors[5] = board[x-1][y+1];
-			  neighbors[6] = board[x-1][y]; 
-			  neighbors[7] = board[x-1][y-1];
-		  }
-		  return neighbors;
-	  }
+	 * Puts a piece of type color on the empty square sq, updating the masks, the hash key
+	 * and the connections. Only the lines through sq can change: a piece there breaks
+	 * the connection between the nearest pieces on either side of it, and connects to
+	 * those of its own color.
+	 */
+	private void placeChip(int sq, int color){
+		for(int dir = 4; dir < 8; dir++){
+			int ahead = firstPiece(sq, dir);
+			int behind = firstPiece(sq, 7 - dir);
+			unlink(ahead, behind);
+			if(ahead >= 0 && (chips[color] & (1L << ahead)) != 0){
+				link(sq, ahead, color);
+			}
+			if(behind >= 0 && (chips[color] & (1L << behind)) != 0){
+				link(sq, behind, color);
+			}
+		}
+		chips[color] |= 1L << sq;
+		toggleKeys(sq, color);
 	}
 	
 	/**
-	 * Checks whether placing a piece would be a violation of rule 4; namely, if placing
-	 * a piece of type color would cause a chain of 3 adjacent pieces of type color.
-	 * @param x		x-coordinate of location to be checked
-	 * @param y		y-coordinate of location to be checked
-	 * @param color	type of piece attempting to be placed
-	 * @return		true iff moving a piece of type color here cause a rule 4 violation.
-	 */
-	private boolean isRule4Violation(int x, int y, int color){
-		Space[] immediateNeighbors = getNeighborSpaces(x,y);
-		int count = 0; //Number of same type pieces
-		for(Space s: immediateNeighbors){
-			if(s != null && s.type() == color){ //Neighbor of same type found; check neighboring spaces
-				count++;
-				Space[] neighbors = getNeighborSpaces(s.position()[0], s.position()[1]);
-				for(Space n: neighbors){
-					if(n != null && n.type()==color && !(x==n.position()[0] && y==n.position()[1])){
-						return true;
-					}
+	 * Adds or removes a piece of type color on sq in the hash key of every symmetry.
+	 */
+	private void toggleKeys(int sq, int color){
+		long[] z = ZOBRIST[color];
+		keys[0] ^= z[sq];
+		keys[1] ^= z[sq ^ MIRRORS[1]];
+		keys[2] ^= z[sq ^ MIRRORS[2]];
+		keys[3] ^= z[sq ^ MIRRORS[3]];
+	}
+	
+	/**
+	 * Removes the piece of type color from sq, updating the masks, the hash key and the
+	 * connections; the reverse of placeChip.
+	 */
+	private void liftChip(int sq, int color){
+		chips[color] &= ~(1L << sq);
+		toggleKeys(sq, color);
+		linkCount[color] -= 2 * Long.bitCount(links[sq]);
+		long seen = links[sq];
+		while(seen != 0){
+			int other = Long.numberOfTrailingZeros(seen);
+			seen &= seen - 1;
+			links[other] &= ~(1L << sq);
+		}
+		links[sq] = 0;
+		for(int dir = 4; dir < 8; dir++){
+			int ahead = firstPiece(sq, dir);
+			int behind = firstPiece(sq, 7 - dir);
+			if(ahead >= 0 && behind >= 0){
+				if((chips[color] & (1L << ahead)) != 0 && (chips[color] & (1L << behind)) != 0){
+					link(ahead, behind, color);
+				} else if((chips[1 - color] & (1L << ahead)) != 0 && (chips[1 - color] & (1L << behind)) != 0){
+					link(ahead, behind, 1 - color);
 				}
 			}
-			if(count >= 2){ //Two or more same type pieces in immediateNeighbors
-				return true;
+		}
+	}
+	
+	/**
+	 * Records that the pieces of type color on squares a and b see each other.
+	 */
+	private void link(int a, int b, int color){
+		links[a] |= 1L << b;
+		links[b] |= 1L << a;
+		linkCount[color] += 2;
+	}
+	
+	/**
+	 * Removes the connection between squares a and b, if there is one; either may be -1.
+	 */
+	private void unlink(int a, int b){
+		if(a >= 0 && b >= 0 && (links[a] & (1L << b)) != 0){
+			links[a] &= ~(1L << b);
+			links[b] &= ~(1L << a);
+			if((chips[BLACK] & (1L << a)) != 0){
+				linkCount[BLACK] -= 2;
+			} else {
+				linkCount[WHITE] -= 2;
 			}
 		}
-		return false;
+	}
+	
+	
+	/**
+	 * CHECK WHETHER A GIVEN MOVE IS LEGAL
+	 */
+	
+	/**
+	 * Checks whether placing a piece would be a violation of rule 4; namely, if placing
+	 * a piece of type color would cause a chain of 3 adjacent pieces of type color.
+	 * That happens iff the square touches two pieces of type color, or touches one that
+	 * already touches another.
+	 * @param sq		square to be checked
+	 * @param color		type of piece attempting to be placed
+	 * @param lifted	mask of pieces to treat as absent (the piece being stepped), or 0
+	 * @return			true iff moving a piece of type color here cause a rule 4 violation.
+	 */
+	private boolean isRule4Violation(int sq, int color, long lifted){
+		long own = chips[color] & ~lifted & ~(1L << sq);
+		long touching = NEIGHBORS[sq] & own;
+		if(touching == 0){
+			return false;
+		} else if((touching & (touching - 1)) != 0){ //Two or more same type pieces next to sq
+			return true;
+		}
+		return (NEIGHBORS[Long.numberOfTrailingZeros(touching)] & own) != 0;
+	}
+	
+	/**
+	 * Returns the mask of all squares where a piece of type color would violate rule 4:
+	 * the squares touching two or more pieces of type color, and the squares touching a
+	 * piece of type color that already touches another.
+	 * @param color		type of piece attempting to be placed
+	 * @param lifted	mask of pieces to treat as absent (the piece being stepped), or 0
+	 * @return			mask of the squares where color may not place a piece
+	 */
+	private long clusterSpaces(int color, long lifted){
+		long all = chips[color] & ~lifted;
+		long own = all;
+		long once = 0; //Squares touching at least one piece
+		long twice = 0; //Squares touching at least two pieces
+		long paired = 0; //Squares touching a piece that touches another
+		while(own != 0){
+			int sq = Long.numberOfTrailingZeros(own);
+			own &= own - 1;
+			twice |= once & NEIGHBORS[sq];
+			once |= NEIGHBORS[sq];
+			if((NEIGHBORS[sq] & all) != 0){
+				paired |= NEIGHBORS[sq];
+			}
+		}
+		return twice | paired;
 	}
 
 	/**
 	 * Checks whether placing a piece here would be a valid move.
-	 * @param x		x-coordinate of location to be checked
-	 * @param y		y-coordinate of location to be checked
-	 * @param color	type of piece attempting to be placed
-	 * @return		true iff moving a piece of type color here is a valid move.
-	 */
-	private boolean isValidLocation(int x, int y, int color){
-		if( (color == BLACK && (x == 0 || x == SIZE-1))
-		  ||(color == WHITE && (y == 0 || y == SIZE-1))){ //Rules 1 and 2
+	 * @param x			x-coordinate of location to be checked
+	 * @param y			y-coordinate of location to be checked
+	 * @param color		type of piece attempting to be placed
+	 * @param lifted	mask of pieces to treat as absent (the piece being stepped), or 0
+	 * @return			true iff moving a piece of type color here is a valid move.
+	 */
+	private boolean isValidLocation(int x, int y, int color, long lifted){
+		if(!isValidLocation(x, y)){
+			return false;
+		}
+		long bit = bit(x, y);
+		if((OFF_LIMITS[color] & bit) != 0){ //Rules 1 and 2
 			return false;
-		} else if(!board[x][y].isEmpty()) { //Rule 3
+		} else if((occupied() & ~lifted & bit) != 0) { //Rule 3
 			return false;
 		} else {
-			return !isRule4Violation(x, y, color); //Valid if rule 4 is not violated
+			return !isRule4Violation(square(x, y), color, lifted); //Valid if rule 4 is not violated
 		}
 	}
 	
@@ -210,48 +427,74 @@ public class Board {
 				|| (player == WHITE && white.getSize() < 10)){
 				return false;
 			}
-			if(this.board[m.x2][m.y2].type() != player){ //Piece to be moved is not there or is opponent's	
+			if(!isValidLocation(m.x2, m.y2) || getPiece(m.x2, m.y2) != player){ //Piece to be moved is not there or is opponent's	
 				return false;
-			} else {
-				Board test = this.duplicate();
-				test.board[m.x2][m.y2].remove();
-				if(test.isValidLocation(m.x1, m.y1, player)){
-					return true;
-				} else{
-					return false;
-				}
+			} else if(m.x1 == m.x2 && m.y1 == m.y2){ //A step must move the piece to a different square
+				return false;
+			} else { //Check the destination as if the piece had already left its square
+				return isValidLocation(m.x1, m.y1, player, bit(m.x2, m.y2));
 			}
 		} else if(m.moveKind == Move.ADD) {
 			if((player == BLACK && black.getSize() >= 10)
 				|| (player == WHITE && white.getSize() >= 10)){				
 				return false;
 			}			
-			return isValidLocation(m.x1, m.y1, player);
+			return isValidLocation(m.x1, m.y1, player, 0);
 		} else { //Move type not recognized
 			return false;
 		}
 	}
 	
+	/**
+	 * Checks each of the specified moves for legality for the specified player. The
+	 * legal destinations are worked out once for adding and once per piece stepped, and
+	 * shared by all the moves that need them.
+	 * @param moves		moves attempting to be made, each from this position
+	 * @param player	player attempting to make the moves
+	 * @return			array whose i-th entry is true iff moves[i] is a legal move for player
+	 */
+	public boolean[] areLegalMoves(Move[] moves, int player) {
+		boolean[] legal = new boolean[moves.length];
+		boolean stepping = Long.bitCount(chips[player]) == PieceSet.MAX_PIECES;
+		long[] destinations = new long[SIZE*SIZE + 1]; //Per square stepped from; the last entry is for adding
+		long known = 0; //Squares whose destinations have been worked out
+		boolean addKnown = false;
+		for(int i = 0; i < moves.length; i++) {
+			Move m = moves[i];
+			if(m.moveKind == Move.QUIT) {
+				legal[i] = true;
+			} else if(m.moveKind == Move.ADD && !stepping && isValidLocation(m.x1, m.y1)) {
+				if(!addKnown) {
+					destinations[SIZE*SIZE] = emptySpaces(player, 0);
+					addKnown = true;
+				}
+				legal[i] = (destinations[SIZE*SIZE] & bit(m.x1, m.y1)) != 0;
+			} else if(m.moveKind == Move.STEP && stepping && isValidLocation(m.x1, m.y1)
+					&& isValidLocation(m.x2, m.y2) && (chips[player] & bit(m.x2, m.y2)) != 0) {
+				int from = square(m.x2, m.y2);
+				if((known & (1L << from)) == 0) {
+					destinations[from] = emptySpaces(player, 1L << from) & ~(1L << from);
+					known |= 1L << from;
+				}
+				legal[i] = (destinations[from] & bit(m.x1, m.y1)) != 0;
+			}
+		}
+		return legal;
+	}
+	
 	
 	/**
 	 * GENERATING POSSIBLE MOVES
 	 */
 	
 	/**
-	 * Returns a list containing all spaces to which a piece of type color can be moved.
-	 * @param color	color of the current player
-	 * @return	a list of all valid spaces for this player
+	 * Returns a mask of all squares to which a piece of type color can be moved.
+	 * @param color		color of the current player
+	 * @param lifted	mask of pieces to treat as absent (the piece being stepped), or 0
+	 * @return	a mask of all valid squares for this player
 	 */
-	private LinkedList<Space> emptySpaces(int color){
-		LinkedList<Space> spaces = new LinkedList<Space>();
-		for(int i = 0; i<board.length; i++){
-			for(int j = 0; j<board.length; j++){
-				if(isValidLocation(i, j, color)){
-					spaces.add(board[i][j]);
-				}
-			}
-		}		
-		return spaces;
+	private long emptySpaces(int color, long lifted){
+		return ~(OFF_LIMITS[color] | (occupied() & ~lifted) | clusterSpaces(color, lifted));
 	}
 	
 	/**
@@ -261,35 +504,44 @@ public class Board {
 	 */
 	public LinkedList<Move> generateAllMoves(int color){
 		LinkedList<Move> out = new LinkedList<Move>();
-		LinkedList<Space> spaces = emptySpaces(color);
-		Iterator<Space> spacesIt = spaces.iterator();
-		PieceSet player = null;
-		switch(color) {
-			case BLACK:	player = black;
-						break;
-			case WHITE:	player = white;
-						break;
+		int[] moves = new int[MAX_MOVES];
+		int count = generateMoves(color, moves);
+		for(int i = 0; i < count; i++) {
+			out.add(decode(moves[i]));
 		}
-		if(player.getSize() == 10){ //Step move
-			Iterator<Piece> pieces = player.getPieces().iterator();
-			while(pieces.hasNext()) {
-				Space curr = ((Piece)pieces.next()).getSpace();
-				while(spacesIt.hasNext()) {
-					Space s = (Space)spacesIt.next();
-					Move m = new Move(s.position()[0], s.position()[1],
-										curr.position()[0], curr.position()[1]);
-					out.add(m);
+		return out;
+	}
+	
+	/**
+	 * Writes all legal moves for the player of color color into buffer, encoded as by
+	 * encode(). Creates no objects, so the search can reuse one buffer per ply.
+	 * @param color		the player for whom to generate legal moves
+	 * @param buffer	array of at least MAX_MOVES entries to fill
+	 * @return			the number of moves written
+	 */
+	public int generateMoves(int color, int[] buffer){
+		int count = 0;
+		if(Long.bitCount(chips[color]) == PieceSet.MAX_PIECES){ //Step move
+			long pieces = chips[color];
+			while(pieces != 0) {
+				int from = Long.numberOfTrailingZeros(pieces);
+				pieces &= pieces - 1;
+				long spaces = emptySpaces(color, 1L << from) & ~(1L << from); //The piece does not count towards its own destination
+				while(spaces != 0) {
+					int sq = Long.numberOfTrailingZeros(spaces);
+					spaces &= spaces - 1;
+					buffer[count++] = (Move.STEP << 12) | (sq << 6) | from;
 				}
-				spacesIt = spaces.iterator();
 			}
 		} else { //Add move
-			while(spacesIt.hasNext()) {
-				Space s = (Space)spacesIt.next();
-				Move m = new Move(s.position()[0], s.position()[1]);
-				out.add(m);
+			long spaces = emptySpaces(color, 0);
+			while(spaces != 0) {
+				int sq = Long.numberOfTrailingZeros(spaces);
+				spaces &= spaces - 1;
+				buffer[count++] = (Move.ADD << 12) | (sq << 6);
 			}
 		}
-		return out;
+		return count;
 	}
 	
 	
@@ -298,36 +550,502 @@ public class Board {
 	 */
 	
 	/**
-	 * Evaluates the score of this board for the given player
-	 * @param color  the int color of the player to evaluate for
-	 * @return	an int representing the score of the board for the given player.
+	 * Returns true iff color has a winning network: at least 6 pieces connected one to
+	 * the next, starting in its start goal and ending in its end goal, using no other
+	 * goal pieces, no piece twice, and turning a corner at every piece.
+	 * A cheap flood fill over the connections first rules out boards where the goals
+	 * are not connected at all.
+	 * @param color	the color to check
+	 * @return	true iff color has a network
+	 */
+	boolean hasNetwork(int color){
+		long own = chips[color];
+		long starts = own & START_GOAL[color];
+		if(starts == 0 || (own & END_GOAL[color]) == 0 || Long.bitCount(own) < 6){
+			return false;
+		} else if(!goalsConnected(color)){
+			return false;
+		}
+		while(starts != 0){
+			int sq = Long.numberOfTrailingZeros(starts);
+			starts &= starts - 1;
+			if(extendNetwork(sq, -1, 1L << sq, 1, color)){
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Returns true iff some chain of connections leads from the start goal to the end goal
+	 * of color without passing through another goal piece. Every network is such a chain.
+	 */
+	private boolean goalsConnected(int color){
+		long reached = chips[color] & START_GOAL[color];
+		long frontier = reached;
+		while(frontier != 0){
+			long next = 0;
+			while(frontier != 0){
+				int sq = Long.numberOfTrailingZeros(frontier);
+				frontier &= frontier - 1;
+				next |= links[sq];
+			}
+			next &= ~reached & ~START_GOAL[color];
+			if((next & END_GOAL[color]) != 0){
+				return true;
+			}
+			reached |= next;
+			frontier = next;
+		}
+		return false;
+	}
+	
+	/**
+	 * Recursive helper for hasNetwork; checks whether a network can be completed from the
+	 * piece on sq.
+	 * @param sq		square of the last piece in the network so far
+	 * @param dir		direction of the line the network arrived along, or -1 at the start
+	 * @param visited	squares of the pieces already in the network
+	 * @param length	number of pieces in the network so far
+	 * @param color		color of the network
+	 * @return			true iff the network can be completed
+	 */
+	private boolean extendNetwork(int sq, int dir, long visited, int length, int color){
+		long next = links[sq] & ~visited & ~START_GOAL[color];
+		if(dir >= 0){
+			next &= ~line(sq, dir); //Must turn a corner
+		}
+		while(next != 0){
+			int other = Long.numberOfTrailingZeros(next);
+			next &= next - 1;
+			if((END_GOAL[color] & (1L << other)) != 0){
+				if(length + 1 >= 6){
+					return true;
+				}
+			} else if(extendNetwork(other, direction(sq, other), visited | (1L << other), length + 1, color)){
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Returns true iff color has a piece in each of its two goals.
+	 * @param color	the color to check
+	 * @return	true iff both goals of color are occupied
+	 */
+	boolean hasBothGoals(int color){
+		return (chips[color] & START_GOAL[color]) != 0 && (chips[color] & END_GOAL[color]) != 0;
+	}
+	
+	/**
+	 * Returns a lower bound on the number of moves color needs to complete a network:
+	 * a network has a piece in each goal and at least 4 pieces outside them, and a move
+	 * puts one piece in one place, so it makes up at most one of the pieces missing.
+	 */
+	int minMovesToNetwork(int color){
+		int missingGoals = ((chips[color] & START_GOAL[color]) == 0 ? 1 : 0)
+				+ ((chips[color] & END_GOAL[color]) == 0 ? 1 : 0);
+		int middle = Long.bitCount(chips[color] & ~(START_GOAL[color] | END_GOAL[color]));
+		return missingGoals + Math.max(0, 4 - middle);
+	}
+	
+	/**
+	 * Writes the moves with which color would complete a network into buffer, encoded
+	 * as by encode(), and returns how many there are. Only moves that could complete
+	 * one are made and checked: none unless color is a move away (minMovesToNetwork),
+	 * and otherwise only moves to a square that sees a piece chained to each goal, or
+	 * lies in that goal. That is exact for adds. A step can also complete a network by
+	 * opening a line through the square it leaves; those wins are not looked for.
+	 * @param color		the player to move
+	 * @param buffer	array of at least MAX_MOVES entries to fill
+	 * @return			the number of moves written
+	 */
+	int winningMoves(int color, int[] buffer){
+		if(minMovesToNetwork(color) > 1){
+			return 0;
+		}
+		long start = chained(chips[color] & START_GOAL[color], color);
+		long end = chained(chips[color] & END_GOAL[color], color);
+		long targets = (START_GOAL[color] | sight(start)) & (END_GOAL[color] | sight(end));
+		int count = 0;
+		if(Long.bitCount(chips[color]) == PieceSet.MAX_PIECES){ //Step move
+			long pieces = chips[color];
+			while(pieces != 0 && targets != 0){
+				int from = Long.numberOfTrailingZeros(pieces);
+				pieces &= pieces - 1;
+				long spaces = emptySpaces(color, 1L << from) & ~(1L << from) & targets;
+				while(spaces != 0){
+					int sq = Long.numberOfTrailingZeros(spaces);
+					spaces &= spaces - 1;
+					count = addIfWinning((Move.STEP << 12) | (sq << 6) | from, color, buffer, count);
+				}
+			}
+		} else { //Add move
+			long spaces = emptySpaces(color, 0) & targets;
+			while(spaces != 0){
+				int sq = Long.numberOfTrailingZeros(spaces);
+				spaces &= spaces - 1;
+				if(joinsGoals(sq, color, start, end)){
+					count = addIfWinning((Move.ADD << 12) | (sq << 6), color, buffer, count);
+				}
+			}
+		}
+		return count;
+	}
+	
+	/**
+	 * Returns true iff a piece of color on the empty square sq could join a piece in start
+	 * to a piece in end, turning a corner on the way as a network must, or could be the
+	 * goal piece at one end of a chain reaching the other goal.
+	 */
+	private boolean joinsGoals(int sq, int color, long start, long end){
+		int fromStart = 0; //Directions from sq in which the nearest piece is in start
+		int fromEnd = 0;
+		for(int dir = 0; dir < 8; dir++){
+			int first = firstPiece(sq, dir);
+			if(first >= 0){
+				fromStart |= (int)((start >>> first) & 1) << dir;
+				fromEnd |= (int)((end >>> first) & 1) << dir;
+			}
+		}
+		if((START_GOAL[color] & (1L << sq)) != 0){
+			return fromEnd != 0;
+		} else if((END_GOAL[color] & (1L << sq)) != 0){
+			return fromStart != 0;
+		}
+		while(fromStart != 0){
+			int dir = Integer.numberOfTrailingZeros(fromStart);
+			fromStart &= fromStart - 1;
+			if((fromEnd & ~(1 << dir) & ~(1 << (7 - dir))) != 0){
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Writes the encoded move code to buffer[count] if it completes a network for color.
+	 * The move is tried on the masks alone; the PieceSets are left as they are.
+	 * @return the new number of moves in buffer
+	 */
+	private int addIfWinning(int code, int color, int[] buffer, int count){
+		int to = (code >>> 6) & 0x3F;
+		int from = code & 0x3F;
+		boolean step = code >>> 12 == Move.STEP;
+		if(step){
+			liftChip(from, color);
+		}
+		placeChip(to, color);
+		boolean won = hasNetwork(color);
+		liftChip(to, color);
+		if(step){
+			placeChip(from, color);
+		}
+		if(won){
+			buffer[count++] = code;
+		}
+		return count;
+	}
+	
+	/**
+	 * Returns the squares where a piece of the other color could stop color from
+	 * making any of the count winning moves in wins: their destinations, the squares
+	 * between those and the pieces they connect to, the lines through squares a step
+	 * leaves, and the squares between connected pieces of color.
+	 */
+	long blockingSquares(int color, int[] wins, int count){
+		long squares = 0;
+		for(int i = 0; i < count; i++){
+			int to = (wins[i] >>> 6) & 0x3F;
+			squares |= 1L << to;
+			long seen = connections(to, color);
+			while(seen != 0){
+				int sq = Long.numberOfTrailingZeros(seen);
+				seen &= seen - 1;
+				squares |= between(to, sq);
+			}
+			if(wins[i] >>> 12 == Move.STEP){
+				int from = wins[i] & 0x3F;
+				for(int dir = 0; dir < 4; dir++){
+					squares |= line(from, dir);
+				}
+			}
+		}
+		long own = chips[color];
+		while(own != 0){
+			int sq = Long.numberOfTrailingZeros(own);
+			own &= own - 1;
+			long linked = links[sq] & ~((1L << sq) - 1); //Each pair once
+			while(linked != 0){
+				int other = Long.numberOfTrailingZeros(linked);
+				linked &= linked - 1;
+				squares |= between(sq, other);
+			}
+		}
+		return squares & ~occupied();
+	}
+	
+	/**
+	 * Returns the pieces of color reachable from the pieces in seeds through chains of
+	 * connections that pass through no goal pieces, seeds included.
+	 */
+	private long chained(long seeds, int color){
+		long goals = START_GOAL[color] | END_GOAL[color];
+		long reached = seeds;
+		long frontier = seeds;
+		while(frontier != 0){
+			int sq = Long.numberOfTrailingZeros(frontier);
+			frontier &= frontier - 1;
+			if((goals & (1L << sq)) != 0 && (seeds & (1L << sq)) == 0){
+				continue; //A network cannot pass through a goal piece
+			}
+			long next = links[sq] & ~reached;
+			reached |= next;
+			frontier |= next;
+		}
+		return reached;
+	}
+	
+	/**
+	 * Returns the empty squares from which one of the pieces in pieces is visible.
+	 */
+	private long sight(long pieces){
+		long occupied = occupied();
+		long seen = 0;
+		while(pieces != 0){
+			int sq = Long.numberOfTrailingZeros(pieces);
+			pieces &= pieces - 1;
+			for(int dir = 0; dir < 8; dir++){
+				long ray = RAYS[dir][sq];
+				int first = firstPiece(sq, dir);
+				if(first >= 0){
+					ray &= ~RAYS[dir][first];
+				}
+				seen |= ray;
+			}
+		}
+		return seen & ~occupied;
+	}
+	
+	/**
+	 * Returns the squares strictly between a and b, which lie on one line.
+	 */
+	static long between(int a, int b){
+		return RAYS[direction(a, b)][a] & RAYS[direction(b, a)][b];
+	}
+	
+	/**
+	 * Evaluates the score of this board from white's point of view. Scores are symmetric
+	 * so they can be negated safely: a white network scores Integer.MAX_VALUE and a black
+	 * network -Integer.MAX_VALUE.
+	 * @return	an int representing the score of the board; positive favors white.
 	 */
 	public int evaluate(){
 		if (white.victory()){
 			return Integer.MAX_VALUE;
 		} else if (black.victory()){
-			return Integer.MIN_VALUE;
+			return -Integer.MAX_VALUE;
 		}
 		int whiteConnections = white.countConnections();
 		int blackConnections = black.countConnections();
-		int whiteEnds = white.hasStartPiece() * white.hasEndPiece() * 100;
-		int blackEnds = black.hasStartPiece() * black.hasEndPiece() * 10;
+		int whiteEnds = hasBothGoals(WHITE) ? 100 : 0;
+		int blackEnds = hasBothGoals(BLACK) ? 10 : 0;
 		return 10*(whiteConnections - blackConnections) + (whiteEnds - blackEnds);
 	}
 	
+	/**
+	 * Returns a mask of the pieces of type color that can be seen from sq: in each of the
+	 * 8 directions, the first piece along the ray, if it is of type color.
+	 * @param sq	square to look from
+	 * @param color	color of the pieces to find
+	 * @return	mask of the squares of the visible pieces of type color
+	 */
+	long connections(int sq, int color){
+		long seen = 0;
+		for(int dir = 0; dir < 8; dir++){
+			int first = firstPiece(sq, dir);
+			if(first >= 0){
+				seen |= 1L << first;
+			}
+		}
+		return seen & chips[color];
+	}
+	
+	/**
+	 * Returns the square of the first piece of either color beyond sq in direction dir,
+	 * or -1 if there is none.
+	 */
+	int firstPiece(int sq, int dir){
+		long blockers = RAYS[dir][sq] & occupied();
+		if(blockers == 0){
+			return -1;
+		} else if(dir < 4){ //Nearest blocker is the highest square on the ray
+			return 63 - Long.numberOfLeadingZeros(blockers);
+		}
+		return Long.numberOfTrailingZeros(blockers); //Nearest blocker is the lowest square on the ray
+	}
+	
+	/**
+	 * Returns the direction number (as in RAYS) of the straight line from one square to
+	 * another; the squares must lie on a common row, column or diagonal.
+	 */
+	static int direction(int from, int to){
+		int run = Integer.signum(to / SIZE - from / SIZE);
+		int rise = Integer.signum(to % SIZE - from % SIZE);
+		int dir = (run + 1) * 3 + (rise + 1);
+		if(dir > 4){ //(0,0) is not a direction
+			dir--;
+		}
+		return dir;
+	}
+	
+	/**
+	 * Returns the squares on the line through sq in direction dir, in both directions,
+	 * excluding sq itself.
+	 */
+	static long line(int sq, int dir){
+		return RAYS[dir][sq] | RAYS[7 - dir][sq];
+	}
+	
 	/**
 	 * UTILITY METHODS
 	 */
 	
+	/**
+	 * Returns the index of (x,y) in the occupancy masks.
+	 */
+	static int square(int x, int y){
+		return x * SIZE + y;
+	}
+	
+	/**
+	 * Returns the single-bit mask for (x,y).
+	 */
+	static long bit(int x, int y){
+		return 1L << square(x, y);
+	}
+	
+	/**
+	 * Returns the Zobrist hash of this position with color to move.
+	 * @param color	the player to move
+	 */
+	public long hashKey(int color){
+		return hashKey(color, 0);
+	}
+	
+	/**
+	 * Returns the Zobrist hash of this position mirrored by symmetry, with color to move.
+	 * @param color	the player to move
+	 * @param symmetry	one of 0 to SYMMETRIES-1, as in MIRRORS
+	 */
+	public long hashKey(int color, int symmetry){
+		if(color == WHITE){
+			return keys[symmetry] ^ ZOBRIST_WHITE;
+		}
+		return keys[symmetry];
+	}
+	
+	/**
+	 * Returns the symmetry that maps this position to its canonical form, the mirror
+	 * image with the smallest key. A position and its mirror images have the same
+	 * canonical form, so tables keyed by canonicalKey() share their entries; a move
+	 * stored for the canonical form is played here as mirrorMove(move, symmetry()).
+	 */
+	public int symmetry(){
+		int best = 0;
+		for(int s = 1; s < SYMMETRIES; s++){
+			if(keys[s] < keys[best]){
+				best = s;
+			}
+		}
+		return best;
+	}
+	
+	/**
+	 * Returns the hash of the canonical form of this position with color to move,
+	 * the same for a position and its mirror images.
+	 * @param color	the player to move
+	 */
+	public long canonicalKey(int color){
+		return hashKey(color, symmetry());
+	}
+	
+	/**
+	 * Mirrors an encoded move by symmetry. Every symmetry is its own inverse, so this
+	 * maps moves both into and out of the canonical form.
+	 * @param code	a move as encode()
+	 * @param symmetry	one of 0 to SYMMETRIES-1, as in MIRRORS
+	 */
+	public static int mirrorMove(int code, int symmetry){
+		int kind = code >>> 12;
+		int mirror = MIRRORS[symmetry];
+		if(kind == Move.ADD){
+			return code ^ (mirror << 6);
+		} else if(kind == Move.STEP){
+			return code ^ (mirror << 6) ^ mirror;
+		}
+		return code;
+	}
+	
+	/**
+	 * Packs a Move into an int: bits 0-5 the old square (STEP only), bits 6-11 the new
+	 * square and bits 12-13 the move kind. A QUIT move encodes to 0.
+	 * @param m	the move to encode; null is treated as QUIT
+	 */
+	public static int encode(Move m){
+		if(m == null || m.moveKind == Move.QUIT){
+			return 0;
+		} else if(m.moveKind == Move.ADD){
+			return (Move.ADD << 12) | (square(m.x1, m.y1) << 6);
+		}
+		return (Move.STEP << 12) | (square(m.x1, m.y1) << 6) | square(m.x2, m.y2);
+	}
+	
+	/**
+	 * Rebuilds the Move packed by encode().
+	 * @param code	an encoded move
+	 */
+	public static Move decode(int code){
+		int kind = code >>> 12;
+		int to = (code >>> 6) & 0x3F;
+		int from = code & 0x3F;
+		if(kind == Move.ADD){
+			return new Move(to / SIZE, to % SIZE);
+		} else if(kind == Move.STEP){
+			return new Move(to / SIZE, to % SIZE, from / SIZE, from % SIZE);
+		}
+		return new Move();
+	}
+	
+	/**
+	 * Returns the shared Space object for (x,y) on this board.
+	 */
+	Space getSpace(int x, int y){
+		return spaces[square(x, y)];
+	}
+	
+	/**
+	 * Returns the mask of all occupied squares.
+	 */
+	long occupied(){
+		return chips[BLACK] | chips[WHITE];
+	}
+	
 	/**
 	 * Returns the type of the piece at the specified location; accounts for wrapping.
-	 * Mainly shorthand for this.board[x][y].type().
 	 * @param x	x-coordinate of location
 	 * @param y	y-coordinate of location
 	 * @return	the piece at (x,y) accounting for wrapping around the board.
 	 */
 	public int getPiece(int x, int y){
-		return board[x % board.length][y % board[0].length].type();
+		long bit = bit(x % SIZE, y % SIZE);
+		if((chips[BLACK] & bit) != 0){
+			return BLACK;
+		} else if((chips[WHITE] & bit) != 0){
+			return WHITE;
+		}
+		return -1;
 	}
 	
 	/**
@@ -335,8 +1053,8 @@ public class Board {
 	 */
 	public String toString(){
 		String out = "";
-		for(int j = 0; j<board[0].length; j++){
-			for(int i = 0; i<board.length; i++){
+		for(int j = 0; j<SIZE; j++){
+			for(int i = 0; i<SIZE; i++){
 				switch(getPiece(i,j)){
 				case -1: out += "-- ";
 						 break;
@@ -360,11 +1078,6 @@ public class Board {
 		Board out = new Board();
 		out.addPieceSet(new PieceSet(BLACK, black.toArray(), out));
 		out.addPieceSet(new PieceSet(WHITE, white.toArray(), out));
-		for(int i = 0; i<board.length; i++){ //Iterate horizontally
-			for(int j = 0; j<board[0].length; j++){ //Iterate vertically
-				out.board[i][j].place(getPiece(i,j));
-			}
-		}
 		return out;
 	}
 	
@@ -381,13 +1094,12 @@ public class Board {
 
 
 /*
- * Represents a single space on the board for Network. Keeps track of its position and the
- * type or lack of an occupying piece.
+ * Represents a single space on the board for Network. Keeps track of its position; occupancy
+ * is kept by the Board's masks.
  */
 class Space {
 	private int x; //x-coordinate
 	private int y; //y-coordinate
-	private int type; //type of space; -1 = empty, 0 = black, 1 = white
 	private Board board; //Board that contains this space
 	
 	/**
@@ -399,24 +1111,24 @@ class Space {
 	public Space(int x, int y, Board b){
 		this.x = x;
 		this.y = y;
-		this.type = -1;
 		this.board = b;
 	}
 	
 	public Space(int x, int y){
 		this.x = x;
 		this.y = y;
-		this.type = -1;
 		this.board = null;
 	}
 	
 	
 	/**
-	 * True iff this space is empty.
-	 * @return	true iff this space is empty.
+	 * Gives the index of this space in the Board's masks, or -1 if it is off the board.
 	 */
-	public boolean isEmpty(){
-		return type == -1;
+	public int square(){
+		if(!Board.isValidLocation(x, y)){
+			return -1;
+		}
+		return Board.square(x, y);
 	}
 	
 	/**
@@ -428,41 +1140,6 @@ class Space {
 		return pos;
 	}
 	
-	/**
-	 * Gives the current type occupying this space.
-	 * @return	-2 if invalid space, -1 if empty, 0 if black, 1 if white
-	 */
-	public int type(){
-		return type;
-	}
-	
-	/**
-	 * Sets the current type of this space to the parameter. Does nothing if space is occupied.
-	 * @param type	int representation of new type of this space.
-	 * @return		true iff the piece was placed; false otherwise
-	 */
-	public boolean place(int type){
-		if(this.type == -1){
-			this.type = type;
-			return true;
-		}
-		return false;
-	}
-	
-	/**
-	 * Removes the piece on this space and returns it; returns empty if this space is empty.
-	 * @return	the type of piece removed if occupied; -1 otherwise.
-	 */
-	public int remove(){
-		if(this.type > -1){
-			int temp = this.type;
-			this.type = -1;
-			return temp;
-		} else {
-			return -1;
-		}
-	}
-	
 	/**
 	 * Returns the board that contains this Space.
 	 */
@@ -488,7 +1165,7 @@ class Space {
 		if (s == null){
 			return false;
 		}
-		return (s.position()[0] == x && s.position()[1] == y);
+		return s.x == x && s.y == y;
 	}
 	
 	/**
@@ -0,0 +1,225 @@
+/* BookBuilder.java */
+
+package player;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ *  Builds an OpeningBook offline by searching opening positions far deeper than a
+ *  timed move can afford.
+ *
+ *  Usage: java player.BookBuilder [-plies N] [-depth D] [-width K] [-threads T] file
+ *
+ *  The book holds a tree of positions for each color. Where that color is to move,
+ *  the position is searched to depth D and the book's move is the only one
+ *  followed; where the other color is to move, the K replies that evaluate best
+ *  after one ply are followed, on the grounds that a reasonable opponent plays one
+ *  of them, along with the book's own move for that position if it has one, so that
+ *  games between two players using the book stay in it. Positions after N or more
+ *  moves are left out.
+ */
+public class BookBuilder {
+
+	private int plies = 6; //Positions with fewer moves played than this go in the book
+	private int depth = 6; //Search depth of each book move
+	private int width = 6; //Opponent replies followed from each position
+	private int threads = Runtime.getRuntime().availableProcessors();
+
+	private TranspositionTable table = new TranspositionTable(64); //Shared by all the searches
+	private Map<Long, int[]> entries = new ConcurrentHashMap<Long, int[]>(); //key -> {move, depth, score}
+
+	/**
+	 * Grows the book for both colors together, one ply at a time. At each ply the
+	 * positions of the color to move are searched first, so that the other color's
+	 * tree can follow the moves just found.
+	 */
+	void build() throws InterruptedException, ExecutionException {
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			List<int[]> mine = new ArrayList<int[]>(); //Lines of the tree whose book side is to move
+			List<int[]> theirs = new ArrayList<int[]>(); //Lines of the other tree
+			mine.add(new int[0]);
+			theirs.add(new int[0]);
+			for(int ply = 0; ply < plies; ply++) {
+				final int color = ply % 2 == 0 ? Board.WHITE : Board.BLACK;
+				List<Future<int[]>> searches = new ArrayList<Future<int[]>>();
+				for(final int[] line : mine) {
+					searches.add(pool.submit(new Callable<int[]>() {
+						public int[] call() {
+							return search(line, color);
+						}
+					}));
+				}
+				List<int[]> next = new ArrayList<int[]>();
+				for(Future<int[]> f : searches) {
+					int[] child = f.get();
+					if(child != null) {
+						next.add(child);
+					}
+				}
+				System.err.println("ply " + ply + ": searched " + mine.size() + " positions, "
+						+ entries.size() + " in book");
+				List<int[]> replies = new ArrayList<int[]>();
+				for(int[] line : theirs) {
+					replies.addAll(replies(line, color));
+				}
+				mine = distinct(replies); //The other color moves next
+				theirs = distinct(next);
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Searches the position after line, color to move, and records it in the book.
+	 * @return line followed by the book move, or null if the game is already over
+	 */
+	private int[] search(int[] line, int color) {
+		Board b = replay(line);
+		if(b.hasNetwork(Board.BLACK) || b.hasNetwork(Board.WHITE)) {
+			return null;
+		}
+		int symmetry = b.symmetry();
+		long key = b.hashKey(color, symmetry);
+		int[] entry = entries.get(key);
+		if(entry == null) {
+			Searcher searcher = new Searcher(b, table);
+			Decision d = searcher.search(color, 1, depth, 0);
+			entry = new int[] {Board.mirrorMove(Board.encode(d.move), symmetry), searcher.stats.depth, d.score};
+			entries.put(key, entry);
+		}
+		return extend(line, Board.mirrorMove(entry[0], symmetry));
+	}
+
+	/**
+	 * Returns line followed by each of the width replies for color that evaluate best,
+	 * and by the book move for the position if it has one.
+	 */
+	private List<int[]> replies(int[] line, int color) {
+		List<int[]> out = new ArrayList<int[]>();
+		Board b = replay(line);
+		if(b.hasNetwork(Board.BLACK) || b.hasNetwork(Board.WHITE)) {
+			return out;
+		}
+		int[] moves = new int[Board.MAX_MOVES];
+		int count = b.generateMoves(color, moves);
+		long[] ranked = new long[count]; //score in the high half, move in the low half
+		for(int i = 0; i < count; i++) {
+			b.makeMove(moves[i], color);
+			int score = color == Board.WHITE ? b.evaluate() : -b.evaluate();
+			b.undoMove(moves[i], color);
+			ranked[i] = ((long)score << 32) | moves[i];
+		}
+		Arrays.sort(ranked);
+		for(int i = count - 1; i >= Math.max(count - width, 0); i--) {
+			out.add(extend(line, (int)ranked[i]));
+		}
+		int symmetry = b.symmetry();
+		int[] entry = entries.get(b.hashKey(color, symmetry));
+		if(entry != null) {
+			out.add(extend(line, Board.mirrorMove(entry[0], symmetry))); //distinct() drops it if it was ranked as well
+		}
+		return out;
+	}
+
+	/**
+	 * Returns the lines leading to distinct positions, keeping the first of each.
+	 * Mirror images count as the same position, since they share a book entry.
+	 */
+	private List<int[]> distinct(List<int[]> lines) {
+		List<int[]> out = new ArrayList<int[]>();
+		Set<Long> seen = new HashSet<Long>();
+		for(int[] line : lines) {
+			if(seen.add(replay(line).canonicalKey(line.length % 2 == 0 ? Board.WHITE : Board.BLACK))) {
+				out.add(line);
+			}
+		}
+		return out;
+	}
+
+	private static int[] extend(int[] line, int move) {
+		int[] out = Arrays.copyOf(line, line.length + 1);
+		out[line.length] = move;
+		return out;
+	}
+
+	/**
+	 * Returns a new board with the encoded moves in line played on it, White first.
+	 */
+	static Board replay(int[] line) {
+		Board b = new Board();
+		b.addPieceSet(new PieceSet(Board.BLACK, b));
+		b.addPieceSet(new PieceSet(Board.WHITE, b));
+		for(int i = 0; i < line.length; i++) {
+			b.makeMove(line[i], i % 2 == 0 ? Board.WHITE : Board.BLACK);
+		}
+		return b;
+	}
+
+	/**
+	 * Writes the book built so far to file.
+	 */
+	void write(String file) throws IOException {
+		long[] keys = new long[entries.size()];
+		int n = 0;
+		for(long key : entries.keySet()) {
+			keys[n++] = key;
+		}
+		Arrays.sort(keys);
+		int[] moves = new int[n];
+		int[] depths = new int[n];
+		int[] scores = new int[n];
+		for(int i = 0; i < n; i++) {
+			int[] entry = entries.get(keys[i]);
+			moves[i] = entry[0];
+			depths[i] = entry[1];
+			scores[i] = entry[2];
+		}
+		OpeningBook.write(file, keys, moves, depths, scores);
+	}
+
+	public static void main(String[] args) throws Exception {
+		BookBuilder builder = new BookBuilder();
+		int i = 0;
+		try {
+			for(; i < args.length - 1; i += 2) {
+				int value = Integer.parseInt(args[i+1]);
+				if(args[i].equals("-plies")) {
+					builder.plies = value;
+				} else if(args[i].equals("-depth")) {
+					builder.depth = Math.min(value, Searcher.MAX_DEPTH);
+				} else if(args[i].equals("-width")) {
+					builder.width = value;
+				} else if(args[i].equals("-threads")) {
+					builder.threads = Math.max(value, 1);
+				} else {
+					break;
+				}
+			}
+		} catch(NumberFormatException e) {
+			i = args.length;
+		}
+		if(i != args.length - 1 || args[i].startsWith("-")) {
+			System.err.println("Usage: java player.BookBuilder [-plies N] [-depth D] [-width K] [-threads T] file");
+			System.exit(1);
+		}
+		long start = System.nanoTime();
+		builder.build();
+		builder.write(args[i]);
+		System.err.printf("Wrote %d positions to %s in %.1f s%n", builder.entries.size(), args[i],
+				(System.nanoTime() - start) / 1e9);
+	}
+}
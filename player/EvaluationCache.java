@@ -0,0 +1,92 @@
+/* EvaluationCache.java */
+
+package player;
+
+/**
+ *  A fixed-size table of the values of positions at the search horizon, keyed by
+ *  Board.canonicalKey(), so that a position reached again, by transposition, in the
+ *  next iteration or as a mirror image, is not scored again. A value is the score
+ *  for the side to move once network threats are allowed for (see Searcher's
+ *  quiescence search), which depends only on the position. There is one slot per
+ *  key; a new value simply replaces the old one.
+ *
+ *  Like TranspositionTable, the cache can be shared by several search threads
+ *  without locking: each slot stores its key XORed with its data, so a slot read
+ *  while another thread was half way through writing it does not match any key.
+ */
+public class EvaluationCache {
+
+	public static final long MISS = 0; //returned by probe() if the position is not stored
+
+	private static final int ENTRY_BYTES = 16; //one key and one data long per entry
+	private static final long STORED = 1L << 32; //Set in every entry, so no entry equals MISS
+
+	private long[] keys; //key ^ data of each slot
+	private long[] data;
+	private int mask; //number of slots - 1; slot count is a power of two
+
+	/**
+	 * Creates a cache that uses at most megabytes MB of memory.
+	 * @param megabytes	memory cap for the cache; at least one entry is always allocated
+	 */
+	public EvaluationCache(int megabytes) {
+		long slots = ((long)megabytes << 20) / ENTRY_BYTES;
+		int size = 1;
+		while((long)size * 2 <= slots && size < (1 << 30)) {
+			size *= 2;
+		}
+		keys = new long[size];
+		data = new long[size];
+		mask = size - 1;
+	}
+
+	/**
+	 * Removes all entries from the cache.
+	 */
+	public void clear() {
+		for(int i = 0; i < keys.length; i++) {
+			keys[i] = 0;
+			data[i] = 0;
+		}
+	}
+
+	/**
+	 * Returns the number of entries this cache can hold.
+	 */
+	public int capacity() {
+		return keys.length;
+	}
+
+	/**
+	 * Looks up the position with hash key.
+	 * @param key	hash of the position and side to move
+	 * @return		the packed entry for key, or MISS if it is not stored
+	 */
+	public long probe(long key) {
+		int i = (int)key & mask;
+		long entry = data[i];
+		if((keys[i] ^ entry) == key && entry != MISS) {
+			return entry;
+		}
+		return MISS;
+	}
+
+	/**
+	 * Records the value of a position.
+	 * @param key		hash of the position and side to move
+	 * @param score		score of the position for the side to move
+	 */
+	public void store(long key, int score) {
+		int i = (int)key & mask;
+		long entry = (score & 0xFFFFFFFFL) | STORED;
+		keys[i] = key ^ entry;
+		data[i] = entry;
+	}
+
+	/**
+	 * Returns the score stored in entry, for the side to move.
+	 */
+	public static int score(long entry) {
+		return (int)entry;
+	}
+}
@@ -0,0 +1,34 @@
+/* IterationEvent.java */
+
+package player;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ *  Flight Recorder event for one iteration of a Searcher's iterative deepening,
+ *  including iterations cut short. The event's thread tells helper searches apart.
+ */
+@Name("player.Iteration")
+@Label("Search Iteration")
+@Category({"Network", "Search"})
+@Description("One depth of iterative deepening")
+class IterationEvent extends Event {
+
+	@Label("Depth")
+	int depth;
+
+	@Label("Score")
+	@Description("For the player to move; meaningless if aborted")
+	int score;
+
+	@Label("Nodes")
+	@Description("Nodes visited by the search so far")
+	long nodes;
+
+	@Label("Aborted")
+	boolean aborted;
+}
@@ -1,7 +1,13 @@
 /* MachinePlayer.java */
 
 package player;
-import list.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  *  An implementation of an automatic Network player.  Keeps track of moves
@@ -12,27 +18,249 @@ public class MachinePlayer extends Player {
 	int color; //Color of this player
 	Board board; //Internal representation of the game board
 	int searchDepth; //Depth of search for game tree traversal
+	TranspositionTable table; //Results of previous searches, shared across moves and threads
+	EvaluationCache cache; //Values of horizon positions, shared across moves and threads; null if disabled
+	long moveTime; //Time budget per move in milliseconds; 0 searches exactly searchDepth
+	Searcher searcher; //Search run on the calling thread
+	Searcher[] helpers; //Searches run on helper threads, one per extra thread
+	ExecutorService pool; //Runs the helpers; null when searching on one thread
+	SearchStats stats; //Counters from the last chooseMove, all threads together
+	SearchMonitor monitor; //Publishes stats over JMX; null unless the player.jmx property is true
+	OpeningBook book; //Moves for known opening positions; null if none
+	NetworkSolver solver; //Looks for forced networks before searching; built on first use, null until then
+	int solverNodes; //Node budget of the solver; 0 if disabled
+	int solveMoves; //The solver looks for networks within this many of our moves
+	int quiescenceDepth; //Plies of network threats and blocks searched past the horizon
+	boolean nullMove; //True to try null-move pruning
+	boolean reductions; //True to search late moves to a reduced depth
+	Searcher ponderer; //Searches on the opponent's time; null unless pondering
+	ExecutorService ponderPool; //Runs the ponderer; null unless pondering
+	Future<Decision> pondering; //The search running on the opponent's time; null if none
+	int predicted; //Opponent's reply that search assumes, as Board.encode()
+	boolean ponderHit; //True once the opponent has played the predicted reply
+	
+	public static final int DEFAULT_HASH_MB = 16; //Default memory cap for the transposition table
+	public static final int DEFAULT_CACHE_MB = 4; //Default memory cap for the evaluation cache
+	public static final long DEFAULT_MOVE_TIME = 4000; //Stays under the referee's five-second limit
+	public static final int MAX_DEPTH = Searcher.MAX_DEPTH; //Deepest iteration a timed search will start
+	public static final int DEFAULT_SOLVER_NODES = 1 << 18; //Node budget of the forced-network solver (about 5 MB)
+	public static final int DEFAULT_SOLVE_MOVES = 3; //Longest forced network the solver looks for, in our moves
+	public static final long MIN_SOLVER_TIME = 40; //About a typical solve; the solver is skipped if it would get less, in milliseconds
+	public static final int SOLVER_SHARE = 2; //The solver may use 1/SOLVER_SHARE of the move time
+	public static final int DEFAULT_QUIESCENCE_DEPTH = 4; //Plies of threats and blocks searched past the horizon
+	public static final long PONDER_LIMIT = 60000; //Longest a search on the opponent's time runs, in milliseconds
+	public static final String DEFAULT_BOOK = "player/opening.book"; //Opening book used unless player.book says otherwise
+
+	static {
+		//The first Flight Recorder event class takes a few hundred ms to set up; do it
+		//when the class loads rather than inside the first timed move
+		new SearchEvent();
+		new IterationEvent();
+	}
 
   /**
    * Creates a machine player with the given color.  Color is either 0 (black)
-   * or 1 (white).  (White has the first move.)
+   * or 1 (white).  (White has the first move.)  The player searches as deep as
+   * it can within DEFAULT_MOVE_TIME per move, and plays from the opening book
+   * in the file named by the player.book property (DEFAULT_BOOK if unset) when
+   * there is one. Before searching, it checks for a forced network within
+   * DEFAULT_SOLVE_MOVES moves whenever one could be that close, and it follows
+   * network threats up to DEFAULT_QUIESCENCE_DEPTH plies past the search horizon,
+   * and it reduces late moves (see setLateMoveReductions).
+   * If the player.ponder property is true, it also ponders; see setPondering.
    * @param color the color of the player
    */
   public MachinePlayer(int color) {
-	  this.color = color;
-	  board = new Board(new PieceSet(Board.BLACK, board), new PieceSet(Board.WHITE, board));
-	  searchDepth = 3;
+	  init(color, 3);
+	  cache = new EvaluationCache(DEFAULT_CACHE_MB);
+	  moveTime = DEFAULT_MOVE_TIME;
+	  book = OpeningBook.openIfPresent(System.getProperty("player.book", DEFAULT_BOOK));
+	  solverNodes = DEFAULT_SOLVER_NODES;
+	  solveMoves = DEFAULT_SOLVE_MOVES;
+	  quiescenceDepth = DEFAULT_QUIESCENCE_DEPTH;
+	  nullMove = false; //Made no measurable difference in self-play
+	  reductions = true;
   }
 
   /**
    * Creates a machine player with the given color and search depth.  Color is
-   * either 0 (black) or 1 (white).  (White has the first move.)
+   * either 0 (black) or 1 (white).  (White has the first move.)  Every move is
+   * chosen by a search of exactly searchDepth, without the book, the solver, the
+   * evaluation cache, the quiescence search or any pruning that is not exact.
    * @param color the color of the player
    * @param searchDepth the searchDepth of the player
    */
   public MachinePlayer(int color, int searchDepth) {
-	  this(color);
+	  init(color, searchDepth);
+  }
+
+  /**
+   * Sets up what every player needs: the board, the transposition table and the
+   * searcher, plus the monitor and ponderer if their properties are set. Time,
+   * cache, book and solver are left off for the constructors to set.
+   */
+  private void init(int color, int searchDepth) {
+	  this.color = color;
 	  this.searchDepth = searchDepth;
+	  board = new Board(new PieceSet(Board.BLACK, board), new PieceSet(Board.WHITE, board));
+	  table = new TranspositionTable(DEFAULT_HASH_MB);
+	  searcher = new Searcher(board, table);
+	  helpers = new Searcher[0];
+	  stats = new SearchStats();
+	  if(Boolean.getBoolean("player.jmx")) {
+		  monitor = SearchMonitor.register(color);
+	  }
+	  if(Boolean.getBoolean("player.ponder")) {
+		  setPondering(true);
+	  }
+  }
+
+  /**
+   * Replaces the transposition table with an empty one that uses at most megabytes MB.
+   * @param megabytes the memory cap for the table
+   */
+  public void setHashSize(int megabytes) {
+	  stopPondering();
+	  table = new TranspositionTable(megabytes);
+	  searcher.table = table;
+	  for(int i = 0; i < helpers.length; i++) {
+		  helpers[i].table = table;
+	  }
+	  if(ponderer != null) {
+		  ponderer.table = table;
+	  }
+  }
+
+  /**
+   * Replaces the evaluation cache, which keeps the scores of positions at the
+   * search horizon so that transpositions and later iterations need not score
+   * them again. The cache is kept from move to move.
+   * @param megabytes the memory cap for the cache; 0 disables it
+   */
+  public void setCacheSize(int megabytes) {
+	  stopPondering();
+	  cache = megabytes > 0 ? new EvaluationCache(megabytes) : null;
+  }
+
+  /**
+   * Sets the opening book to play from, replacing any loaded by the constructor.
+   * @param book the book, or null to always search
+   */
+  public void setOpeningBook(OpeningBook book) {
+	  this.book = book;
+  }
+
+  /**
+   * Sets up the forced-network solver that runs before each search.
+   * @param maxNodes the node budget of each solve; each node takes 20 bytes. 0 disables the solver
+   * @param moves the solver looks for networks within this many of our moves
+   */
+  public void setSolver(int maxNodes, int moves) {
+	  solver = null;
+	  solverNodes = moves > 0 ? Math.max(maxNodes, 0) : 0;
+	  solveMoves = moves;
+  }
+
+  /**
+   * Sets how far past the search horizon chooseMove follows network threats. At
+   * the horizon, a player that can complete a network wins, and a player facing
+   * one searches only the moves that might block it, until neither side
+   * threatens a network or the plies run out.
+   * @param plies the plies to search past the horizon, at most
+   * Searcher.MAX_QUIESCENCE_DEPTH; 0 evaluates the horizon as it stands
+   */
+  public void setQuiescenceDepth(int plies) {
+	  quiescenceDepth = Math.max(0, Math.min(plies, Searcher.MAX_QUIESCENCE_DEPTH));
+  }
+
+  /**
+   * Turns null-move pruning on or off. Where a side could reach the bound it needs
+   * even if it passed, searched a little shallower, its moves are not searched at
+   * all. It can overlook a position where any move is worse than none, and it is
+   * off by default, having made no measurable difference in self-play.
+   * @param on true to prune with null moves
+   */
+  public void setNullMovePruning(boolean on) {
+	  nullMove = on;
+  }
+
+  /**
+   * Turns late-move reductions on or off. Moves that come late in the search order
+   * are searched to a reduced depth first and only searched fully if they turn
+   * out better than expected, which lets a timed search go deeper.
+   * @param on true to reduce late moves
+   */
+  public void setLateMoveReductions(boolean on) {
+	  reductions = on;
+  }
+
+  /**
+   * Sets the time budget per move. With a budget, chooseMove deepens one ply at
+   * a time until the budget runs out and plays the best move of the last
+   * completed iteration; with 0, it searches exactly searchDepth. The opening
+   * book is only used with a budget.
+   * @param millis the budget per move in milliseconds, or 0 for none
+   */
+  public void setMoveTime(long millis) {
+	  moveTime = millis;
+  }
+
+  /**
+   * Sets the number of threads chooseMove searches with. Extra threads run the
+   * same iterative deepening search on their own copies of the board, starting
+   * at alternating depths, and share results through the transposition table
+   * ("Lazy SMP"); the move played is always the one found by the calling thread.
+   * @param threads the number of search threads, at least 1
+   */
+  public void setThreads(int threads) {
+	  if(pool != null) {
+		  pool.shutdown();
+		  pool = null;
+	  }
+	  helpers = new Searcher[Math.max(threads, 1) - 1];
+	  for(int i = 0; i < helpers.length; i++) {
+		  helpers[i] = new Searcher(null, table);
+	  }
+	  if(helpers.length > 0) {
+		  pool = Executors.newFixedThreadPool(helpers.length, daemonThreads("MachinePlayer helper"));
+	  }
+  }
+
+  /**
+   * Turns pondering on or off. A pondering player keeps searching after
+   * chooseMove returns, on the position after the reply it expects from the
+   * opponent: the best reply found by its own search. If opponentMove brings
+   * that reply, the next chooseMove carries on with that search, which has by
+   * then had the opponent's thinking time as well, for its usual budget; any
+   * other move cancels it. The search on the opponent's time runs on one
+   * thread, whatever setThreads says, and stops after PONDER_LIMIT.
+   * @param on true to ponder
+   */
+  public void setPondering(boolean on) {
+	  stopPondering();
+	  if(ponderPool != null) {
+		  ponderPool.shutdown();
+		  ponderPool = null;
+	  }
+	  ponderer = null;
+	  if(on) {
+		  ponderer = new Searcher(null, table);
+		  ponderPool = Executors.newSingleThreadExecutor(daemonThreads("MachinePlayer ponder"));
+	  }
+  }
+
+  /**
+   * Returns a factory for threads with the given name that do not keep the
+   * referee's JVM alive.
+   */
+  private static ThreadFactory daemonThreads(final String name) {
+	  return new ThreadFactory() {
+		  public Thread newThread(Runnable r) {
+			  Thread t = new Thread(r, name);
+			  t.setDaemon(true);
+			  return t;
+		  }
+	  };
   }
 
   /**
@@ -40,62 +268,262 @@ public class MachinePlayer extends Player {
    * internal game board) as a move by "this" player.
    */
   public Move chooseMove() {
-	  Decision best = minimax(color, board, 0, Integer.MIN_VALUE, Integer.MAX_VALUE);
+	  SearchEvent event = new SearchEvent();
+	  event.begin();
+	  long start = System.nanoTime();
+	  Decision best = null;
+	  boolean fromBook = false;
+	  boolean solved = false;
+	  boolean pondered = false;
+	  if(!ponderHit) {
+		  stopPondering(); //Searching a position we are not in
+	  }
+	  if(book != null && moveTime > 0) {
+		  best = bookMove();
+		  fromBook = best != null;
+	  }
+	  if(best == null && solverNodes > 0) {
+		  long deadline = 0;
+		  if(moveTime > 0) {
+			  deadline = start + moveTime * 1000000L / SOLVER_SHARE;
+		  }
+		  if(moveTime == 0 || deadline - System.nanoTime() >= MIN_SOLVER_TIME * 1000000L) {
+			  best = forcedNetwork(deadline);
+			  solved = best != null;
+		  }
+	  }
+	  long budget = 0;
+	  if(moveTime > 0) {
+		  budget = Math.max(moveTime - (System.nanoTime() - start) / 1000000, 1);
+	  }
+	  if(best == null && pondering != null) {
+		  best = ponderResult(budget);
+		  pondered = best != null;
+		  if(moveTime > 0) {
+			  budget = Math.max(moveTime - (System.nanoTime() - start) / 1000000, 1);
+		  }
+	  }
+	  stopPondering();
+	  if(best == null) {
+		  best = search(budget);
+	  }
 	  board.makeMove(best.move, color);
+	  startPondering();
+	  if(event.shouldCommit()) {
+		  event.book = fromBook;
+		  event.solved = solved;
+		  event.pondered = pondered;
+		  event.color = color;
+		  event.move = best.move.toString();
+		  event.threads = pondered ? 1 : helpers.length + 1;
+		  event.set(stats);
+		  event.commit();
+	  }
+	  if(monitor != null) {
+		  monitor.record(stats);
+	  }
 	  return best.move;
   } 
-  
+
   /**
-   * Helper method for chooseMove implementing the minimax search algorithm 
-   * with alpha-beta pruning
-   * 
-   * @param color the color of the player
-   * @param b the board to be evaluated
-   * @param depth the search depth
-   * @param alpha the alpha element of alpha-beta pruning
-   * @param beta the beta element of alpha-beta pruning
-   * @return
-   */
-  private Decision minimax(int color, Board b, int depth, int alpha, int beta) {	  
-	  Decision myBest = new Decision();
-	  Decision reply;
-	  
-	  if(b.black.victory() || b.white.victory()) {
-		  return new Decision(new Move(), b.evaluate());
-	  }
-	  if(depth >= searchDepth) { //because depth counts each minimax run but searchdepth counts pairs of runs
-		  int score = b.evaluate();
-		  return new Decision(null, score);
-	  }
-	  if(color == this.color){
-		  myBest.score = Integer.MIN_VALUE;
-	  } else {
-		  myBest.score = Integer.MAX_VALUE;
-	  }
-	  
-	  Iterator<Move> moves = b.generateAllMoves(color).iterator();
-	  while(moves.hasNext()) {
-		  Move m = moves.next();
-		  Board test = b.duplicate();
-		  test.makeMove(m, color);
-		  reply = minimax((color+1)%2, test, depth+1, alpha, beta);
-		  if(color == this.color && reply.score >= myBest.score){
-			  myBest.score = reply.score;
-			  myBest.move = m;
-			  alpha = reply.score;
-		  } else if(color != this.color && reply.score <= myBest.score) {
-			  myBest.score = reply.score;
-			  myBest.move = m;
-			  beta = reply.score;
+   * Starts a search on the opponent's time, if pondering, of the position after the
+   * opponent's best reply as stored in the transposition table. Nothing is started
+   * if the game is over or no legal reply is stored.
+   */
+  private void startPondering() {
+	  if(ponderer == null || board.hasNetwork(Board.BLACK) || board.hasNetwork(Board.WHITE)) {
+		  return;
+	  }
+	  int opponent = 1 - color;
+	  int symmetry = board.symmetry();
+	  int reply = Board.mirrorMove(TranspositionTable.move(table.probe(board.hashKey(opponent, symmetry))), symmetry);
+	  if(reply == 0 || !board.isLegalMove(Board.decode(reply), opponent)) {
+		  return;
+	  }
+	  Board next = board.duplicate();
+	  next.makeMove(reply, opponent);
+	  if(next.hasNetwork(opponent)) {
+		  return; //Nothing left to think about
+	  }
+	  ponderer.board = next;
+	  ponderer.quiescenceDepth = quiescenceDepth;
+	  ponderer.cache = cache;
+	  ponderer.nullMove = nullMove;
+	  ponderer.reductions = reductions;
+	  ponderer.stopped = false;
+	  final int maxDepth = moveTime > 0 ? MAX_DEPTH : searchDepth;
+	  final long limit = moveTime > 0 ? PONDER_LIMIT : 0;
+	  table.newSearch();
+	  predicted = reply;
+	  ponderHit = false;
+	  pondering = ponderPool.submit(new Callable<Decision>() {
+		  public Decision call() {
+			  return ponderer.search(color, 1, maxDepth, limit);
 		  }
-		  if(alpha >= beta) {
-			  return myBest;
+	  });
+  }
+
+  /**
+   * Lets the search on the opponent's time, which has turned out to be searching
+   * the current position, run for budget more milliseconds (or, without a budget,
+   * to searchDepth) and returns its move. The stats are the ponderer's, time on the
+   * opponent's clock included.
+   * @return the best move of its deepest completed iteration; null if there is none
+   */
+  private Decision ponderResult(long budget) {
+	  Decision best = null;
+	  try {
+		  if(budget > 0) {
+			  best = pondering.get(budget, TimeUnit.MILLISECONDS);
+		  } else {
+			  best = pondering.get();
+		  }
+	  } catch(TimeoutException e) {
+		  ponderer.stop();
+		  try {
+			  best = pondering.get();
+		  } catch(Exception f) {
+			  //Search again below
 		  }
+	  } catch(Exception e) {
+		  //Search again below
 	  }
-	  return myBest;
+	  pondering = null;
+	  ponderHit = false;
+	  if(best != null) {
+		  stats.set(ponderer.stats);
+	  }
+	  return best;
+  }
+
+  /**
+   * Cancels the search on the opponent's time, if there is one, and waits for it to
+   * finish.
+   */
+  private void stopPondering() {
+	  if(pondering != null) {
+		  ponderer.stop();
+		  try {
+			  pondering.get();
+		  } catch(Exception e) {
+			  //Its results are not wanted
+		  }
+		  pondering = null;
+	  }
+	  ponderHit = false;
+  }
+
+  /**
+   * Returns the counters gathered by the last chooseMove, summed over all the
+   * search threads; the depth, score and time are those of the calling thread.
+   */
+  public SearchStats getStats() {
+	  return stats.copy();
   }
   
+  /**
+   * Looks the current position up in the opening book. The stats are cleared but
+   * for the depth and score stored with the move.
+   * @return the book move, or null if the position is not in the book
+   */
+  private Decision bookMove() {
+	  int symmetry = board.symmetry();
+	  int i = book.find(board.hashKey(color, symmetry));
+	  if(i < 0) {
+		  return null;
+	  }
+	  Move m = Board.decode(Board.mirrorMove(book.move(i), symmetry));
+	  if(!board.isLegalMove(m, color)) {
+		  return null; //Another position with the same key
+	  }
+	  stats.clear();
+	  stats.depth = book.depth(i);
+	  stats.score = book.score(i);
+	  return new Decision(m, stats.score);
+  }
+
+  /**
+   * Runs the solver for a network we can force within 1, 2, ... solveMoves moves,
+   * skipping lengths too short to complete one. The stats hold the solver's node
+   * count and a depth of 0.
+   * @param deadline System.nanoTime() at which to give up; 0 for none
+   * @return the first move of the shortest forced network found, or null if none
+   */
+  private Decision forcedNetwork(long deadline) {
+	  long start = System.nanoTime();
+	  long nodes = 0;
+	  Decision win = null;
+	  for(int moves = Math.max(board.minMovesToNetwork(color), 1); moves <= solveMoves && win == null; moves++) {
+		  if(solver == null) {
+			  solver = new NetworkSolver(board, solverNodes);
+		  }
+		  int result = solver.solve(color, color, moves, deadline);
+		  nodes += solver.nodes;
+		  if(result == NetworkSolver.PROVEN && solver.bestMove != 0) {
+			  win = new Decision(Board.decode(solver.bestMove), Integer.MAX_VALUE);
+		  } else if(result == NetworkSolver.UNKNOWN) {
+			  break; //Longer networks would not fit in the budget either
+		  }
+	  }
+	  if(win != null) {
+		  stats.clear();
+		  stats.nodes = nodes;
+		  stats.score = win.score;
+		  stats.searchNanos = System.nanoTime() - start;
+	  }
+	  return win;
+  }
 
+  /**
+   * Searches the current position by iterative deepening: depth 1, 2, ... up to
+   * searchDepth, or with a time budget, up to MAX_DEPTH until the time runs out.
+   * Helper threads, if any, search until the calling thread is done.
+   * @param budget the time budget in milliseconds, or 0 to search exactly searchDepth
+   * @return the best move of the deepest completed iteration
+   */
+  private Decision search(long budget) {
+	  table.newSearch();
+	  Future<?>[] running = new Future<?>[helpers.length];
+	  for(int i = 0; i < helpers.length; i++) {
+		  final Searcher helper = helpers[i];
+		  final int firstDepth = 1 + (i+1) % 2;
+		  helper.board = board.duplicate();
+		  helper.quiescenceDepth = quiescenceDepth;
+		  helper.cache = cache;
+		  helper.nullMove = nullMove;
+		  helper.reductions = reductions;
+		  helper.stopped = false;
+		  running[i] = pool.submit(new Runnable() {
+			  public void run() {
+				  helper.search(color, firstDepth, MAX_DEPTH, 0);
+			  }
+		  });
+	  }
+	  int maxDepth = searchDepth;
+	  if(budget > 0) {
+		  maxDepth = MAX_DEPTH;
+	  }
+	  searcher.quiescenceDepth = quiescenceDepth;
+	  searcher.cache = cache;
+	  searcher.nullMove = nullMove;
+	  searcher.reductions = reductions;
+	  Decision best = searcher.search(color, 1, maxDepth, budget);
+	  for(int i = 0; i < helpers.length; i++) {
+		  helpers[i].stop();
+	  }
+	  for(int i = 0; i < running.length; i++) {
+		  try {
+			  running[i].get();
+		  } catch(Exception e) {
+			  //A failed helper only costs us the entries it would have stored
+		  }
+	  }
+	  stats.set(searcher.stats);
+	  for(int i = 0; i < helpers.length; i++) {
+		  stats.add(helpers[i].stats);
+	  }
+	  return best;
+  }
   
   /**
    *  If the Move m is legal, records the move as a move by the opponent
@@ -115,6 +543,11 @@ public class MachinePlayer extends Player {
 	}
 	
 	if (board.isLegalMove(m, oppColor)) {		
+		if (pondering != null && Board.encode(m) == predicted) {
+			ponderHit = true; //Keep searching; chooseMove collects the result
+		} else {
+			stopPondering();
+		}
 		return board.makeMove(m, oppColor);
 	}
 	return false;
@@ -132,6 +565,7 @@ public class MachinePlayer extends Player {
    */
   public boolean forceMove(Move m) {
 	if (board.isLegalMove(m, color)) {
+		stopPondering();
 		return board.makeMove(m, color);
 	}
     return false;
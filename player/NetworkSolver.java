@@ -0,0 +1,218 @@
+/* NetworkSolver.java */
+
+package player;
+
+/**
+ *  Proves or disproves that a player can force a network within a given number of
+ *  its own moves, by proof-number search. Unlike alpha-beta to a fixed depth, the
+ *  search goes as deep as the question needs along forcing lines and stops as soon
+ *  as the answer is certain, so a forced win a few plies past the search horizon is
+ *  found, and found without searching the quiet lines to full width.
+ *
+ *  The game tree is kept explicitly, in parallel arrays sized by the node budget;
+ *  the children of a node are stored next to each other. Nodes where the attacker
+ *  is to move are OR nodes (one winning move proves them) and nodes where the
+ *  defender is to move are AND nodes (every reply must lose). A move that completes
+ *  networks for both players loses for the player who made it.
+ */
+class NetworkSolver {
+
+	static final int PROVEN = 1; //The attacker can force a network
+	static final int DISPROVEN = -1; //The defender can stop every network within the limit
+	static final int UNKNOWN = 0; //The node budget ran out first
+
+	private static final int INFINITY = 1 << 30; //Proof or disproof number of a solved node
+	private static final int CLOCK_INTERVAL = 15; //Check the clock every CLOCK_INTERVAL+1 expansions; each makes every move once
+
+	private Board board; //Moves are made and undone in place
+	private int capacity; //Node budget
+	private int size; //Nodes in the tree
+	private int[] move; //Move leading to each node, as Board.encode()
+	private int[] first; //Index of each node's first child; -1 until expanded
+	private int[] count; //Number of children
+	private int[] pn; //Proof numbers
+	private int[] dn; //Disproof numbers
+	private int[] buffer; //Moves generated at the node being expanded
+	private int[] path; //Nodes from the root to the node being expanded
+	long nodes; //Nodes created by the last solve()
+	int bestMove; //After a PROVEN result with the attacker to move, a move that forces the network
+
+	/**
+	 * Creates a solver for board that creates at most maxNodes nodes per solve().
+	 */
+	NetworkSolver(Board board, int maxNodes) {
+		this.board = board;
+		capacity = Math.max(maxNodes, 1);
+		move = new int[capacity];
+		first = new int[capacity];
+		count = new int[capacity];
+		pn = new int[capacity];
+		dn = new int[capacity];
+		buffer = new int[Board.MAX_MOVES];
+	}
+
+	/**
+	 * Works out whether attacker can complete a network within moves moves of its
+	 * own, with color to move. The board is left as it was.
+	 * @param deadline	System.nanoTime() at which to give up; 0 for none
+	 * @return PROVEN, DISPROVEN, or UNKNOWN if the node budget or the time ran out first
+	 */
+	int solve(int attacker, int color, int moves, long deadline) {
+		nodes = 0;
+		bestMove = 0;
+		path = new int[2 * moves + 1];
+		size = 1;
+		first[0] = -1;
+		count[0] = 0;
+		move[0] = 0;
+		int outcome = outcome(attacker, 1 - color, moves);
+		if(outcome != UNKNOWN) {
+			return outcome;
+		}
+		pn[0] = 1;
+		dn[0] = 1;
+
+		int expansions = 0;
+		while(pn[0] != 0 && dn[0] != 0) {
+			if((++expansions & CLOCK_INTERVAL) == 0 && deadline != 0 && System.nanoTime() >= deadline) {
+				break;
+			}
+			//Walk down to the most proving node, making the moves on the board
+			int n = 0;
+			int toMove = color;
+			int left = moves; //Moves the attacker has left at n
+			int depth = 0;
+			while(first[n] >= 0) {
+				n = selectChild(n, toMove == attacker);
+				board.makeMove(move[n], toMove);
+				if(toMove == attacker) {
+					left--;
+				}
+				toMove = 1 - toMove;
+				path[++depth] = n;
+			}
+			boolean expanded = expand(n, attacker, toMove, left);
+			//Back up the numbers, unmaking the moves on the way
+			for(int d = depth; d >= 0; d--) {
+				int node = path[d];
+				int side = (d % 2 == 0) ? color : 1 - color; //To move at node
+				update(node, side == attacker);
+				if(d > 0) {
+					board.undoMove(move[node], 1 - side);
+				}
+			}
+			if(!expanded) {
+				break;
+			}
+		}
+		nodes = size;
+		if(pn[0] == 0) {
+			if(color == attacker) {
+				for(int c = first[0]; c < first[0] + count[0]; c++) {
+					if(pn[c] == 0) {
+						bestMove = move[c];
+						break;
+					}
+				}
+			}
+			return PROVEN;
+		} else if(dn[0] == 0) {
+			return DISPROVEN;
+		}
+		return UNKNOWN;
+	}
+
+	/**
+	 * Returns the child of n to descend into: at an OR node the one with the smallest
+	 * proof number, at an AND node the one with the smallest disproof number.
+	 */
+	private int selectChild(int n, boolean or) {
+		int best = first[n];
+		int end = first[n] + count[n];
+		for(int c = best + 1; c < end; c++) {
+			if(or ? pn[c] < pn[best] : dn[c] < dn[best]) {
+				best = c;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Creates the children of leaf n, color to move, and gives each its numbers.
+	 * @param left	moves the attacker has left at n
+	 * @return false if the budget has no room for them
+	 */
+	private boolean expand(int n, int attacker, int color, int left) {
+		int moves = board.generateMoves(color, buffer);
+		if(size + moves > capacity) {
+			return false;
+		}
+		int leftAfter = color == attacker ? left - 1 : left;
+		first[n] = size;
+		count[n] = moves;
+		for(int i = 0; i < moves; i++) {
+			int c = size++;
+			move[c] = buffer[i];
+			first[c] = -1;
+			count[c] = 0;
+			board.makeMove(buffer[i], color);
+			int outcome = outcome(attacker, color, leftAfter);
+			board.undoMove(buffer[i], color);
+			if(outcome == PROVEN) {
+				pn[c] = 0;
+				dn[c] = INFINITY;
+			} else if(outcome == DISPROVEN) {
+				pn[c] = INFINITY;
+				dn[c] = 0;
+			} else {
+				pn[c] = 1;
+				dn[c] = 1;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the outcome on the board as it stands, just after mover has moved.
+	 * @param left	moves the attacker has left
+	 */
+	private int outcome(int attacker, int mover, int left) {
+		boolean attacking = board.hasNetwork(attacker);
+		boolean defending = board.hasNetwork(1 - attacker);
+		if(attacking && defending) {
+			return mover == attacker ? DISPROVEN : PROVEN; //The player who completed both loses
+		} else if(attacking) {
+			return PROVEN;
+		} else if(defending) {
+			return DISPROVEN;
+		} else if(left == 0) {
+			return DISPROVEN; //Too late for the attacker to complete one
+		}
+		return UNKNOWN;
+	}
+
+	/**
+	 * Recomputes the numbers of the expanded node n from its children.
+	 */
+	private void update(int n, boolean or) {
+		if(first[n] < 0) {
+			return;
+		}
+		int min = INFINITY;
+		int sum = 0;
+		int end = first[n] + count[n];
+		for(int c = first[n]; c < end; c++) {
+			int minor = or ? pn[c] : dn[c];
+			int major = or ? dn[c] : pn[c];
+			min = Math.min(min, minor);
+			sum = (int)Math.min((long)sum + major, INFINITY);
+		}
+		if(or) {
+			pn[n] = min;
+			dn[n] = sum;
+		} else {
+			dn[n] = min;
+			pn[n] = sum;
+		}
+	}
+}
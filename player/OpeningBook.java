@@ -0,0 +1,160 @@
+/* OpeningBook.java */
+
+package player;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ *  A read-only table of opening positions and the moves to play in them, built
+ *  offline by BookBuilder. The file is memory-mapped rather than read, so opening a
+ *  book costs nothing on the heap whatever its size, and a lookup is a binary search
+ *  touching a handful of pages.
+ *
+ *  File layout (big-endian):
+ *  <pre>
+ *  header:	long MAGIC, long Board.ZOBRIST_WHITE of the builder, int entry count, int 0
+ *  entries:	long key, short move, byte depth, byte 0, int score; sorted by key
+ *  </pre>
+ *  Keys are Board.canonicalKey() of the position with the side to move, so one entry
+ *  serves a position and its mirror images. Moves are as Board.encode() in the
+ *  canonical orientation, to be mapped back with Board.mirrorMove(), and scores are
+ *  for the side to move. The builder's Zobrist key is
+ *  recorded so that a book built with different hashing is refused instead of
+ *  misread.
+ */
+public class OpeningBook {
+
+	static final long MAGIC = 0x4E4554424F4F4B32L; //"NETBOOK2"; version 1 used Board.hashKey()
+	static final int HEADER_BYTES = 24;
+	static final int ENTRY_BYTES = 16;
+
+	private final ByteBuffer entries; //The mapped entries, header excluded
+	private final int size;
+
+	private OpeningBook(ByteBuffer entries, int size) {
+		this.entries = entries;
+		this.size = size;
+	}
+
+	/**
+	 * Maps the book in file.
+	 * @throws IOException if file cannot be read or is not a book for this version of Board
+	 */
+	public static OpeningBook open(String file) throws IOException {
+		MappedByteBuffer map;
+		try(FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+			map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		if(map.capacity() < HEADER_BYTES || map.getLong(0) != MAGIC) {
+			throw new IOException(file + " is not an opening book");
+		}
+		if(map.getLong(8) != Board.ZOBRIST_WHITE) {
+			throw new IOException(file + " was built with different position keys");
+		}
+		int size = map.getInt(16);
+		if(size < 0 || map.capacity() != HEADER_BYTES + (long)size * ENTRY_BYTES) {
+			throw new IOException(file + " is truncated");
+		}
+		map.position(HEADER_BYTES);
+		return new OpeningBook(map.slice(), size);
+	}
+
+	/**
+	 * Maps the book in file if there is a usable one there.
+	 * @return the book, or null if file is missing or cannot be used
+	 */
+	static OpeningBook openIfPresent(String file) {
+		if(file == null || file.isEmpty() || !Files.isReadable(Paths.get(file))) {
+			return null;
+		}
+		try {
+			return open(file);
+		} catch(IOException e) {
+			return null; //Play without a book rather than not at all
+		}
+	}
+
+	/**
+	 * Returns the number of positions in the book.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the index of the entry for the position with hash key, or -1 if the
+	 * position is not in the book.
+	 */
+	public int find(long key) {
+		int lo = 0;
+		int hi = size - 1;
+		while(lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			long k = entries.getLong(mid * ENTRY_BYTES);
+			if(k < key) {
+				lo = mid + 1;
+			} else if(k > key) {
+				hi = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the move of entry i, as Board.encode().
+	 */
+	public int move(int i) {
+		return entries.getShort(i * ENTRY_BYTES + 8) & 0xFFFF;
+	}
+
+	/**
+	 * Returns the depth the move of entry i was searched to.
+	 */
+	public int depth(int i) {
+		return entries.get(i * ENTRY_BYTES + 10) & 0xFF;
+	}
+
+	/**
+	 * Returns the score of entry i, for the side to move.
+	 */
+	public int score(int i) {
+		return entries.getInt(i * ENTRY_BYTES + 12);
+	}
+
+	/**
+	 * Writes a book to file.
+	 * @param keys		position keys, in ascending order with no repeats
+	 * @param moves		move for each key, as Board.encode()
+	 * @param depths	search depth of each move
+	 * @param scores	score of each move for the side to move
+	 */
+	static void write(String file, long[] keys, int[] moves, int[] depths, int[] scores) throws IOException {
+		try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			out.writeLong(MAGIC);
+			out.writeLong(Board.ZOBRIST_WHITE);
+			out.writeInt(keys.length);
+			out.writeInt(0);
+			for(int i = 0; i < keys.length; i++) {
+				if(i > 0 && keys[i] <= keys[i-1]) {
+					throw new IllegalArgumentException("Book keys must be sorted and distinct");
+				}
+				out.writeLong(keys[i]);
+				out.writeShort(moves[i]);
+				out.writeByte(depths[i]);
+				out.writeByte(0);
+				out.writeInt(scores[i]);
+			}
+		}
+	}
+}
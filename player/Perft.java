@@ -0,0 +1,256 @@
+/* Perft.java */
+
+package player;
+
+import java.util.Arrays;
+
+/**
+ *  Counts the positions reachable in exactly depth moves ("perft"), to time move
+ *  generation and to check that changes to the board leave the set of moves alone.
+ *  A position where either player has a network ends the game: it is counted if it
+ *  is at the last ply, but never expanded.
+ *
+ *  Usage: java player.Perft [-divide] [-check] depth [move ...]
+ *
+ *  The moves set up the position, starting from the empty board with White to move;
+ *  "xy" adds a chip at (x, y) and "ab-xy" steps the chip on (a, b) to (x, y). They are
+ *  played through the forceMove and opponentMove of a MachinePlayer, so an illegal
+ *  setup is refused rather than counted from.
+ *
+ *  -divide prints the count below each root move, sorted by move, so the output of
+ *  two versions of the board can be diffed to find the moves they disagree on.
+ *  -check tries isLegalMove on every possible ADD and STEP at every node and fails
+ *  unless exactly the generated moves pass, and checks that each undoMove restores
+ *  the position the move was made from.
+ */
+public class Perft {
+
+	private static final int CODES = 1 << 14; //Number of distinct encoded moves
+
+	private Board board;
+	private boolean check; //Cross-check every node
+	private int[][] buffers; //Per ply, the encoded moves generated there
+	private boolean[] generated; //Scratch for check(), indexed by encoded move
+	private long checked; //Nodes cross-checked so far
+
+	/**
+	 * Creates a counter for board that can search depth plies.
+	 * @param check	true to cross-check every node against isLegalMove
+	 */
+	Perft(Board board, int depth, boolean check) {
+		this.board = board;
+		this.check = check;
+		buffers = new int[Math.max(depth, 1)][Board.MAX_MOVES];
+		generated = new boolean[CODES];
+	}
+
+	/**
+	 * Returns the number of positions depth moves below the board, color to move.
+	 */
+	long count(int color, int depth) {
+		if(depth == 0) {
+			return 1;
+		}
+		if(board.hasNetwork(Board.BLACK) || board.hasNetwork(Board.WHITE)) {
+			return 0;
+		}
+		int[] moves = buffers[depth-1];
+		int count = board.generateMoves(color, moves);
+		if(check) {
+			check(moves, count, color);
+		}
+		if(depth == 1 && !check) {
+			return count;
+		}
+		long total = 0;
+		for(int i = 0; i < count; i++) {
+			total += countBelow(moves[i], color, depth);
+		}
+		return total;
+	}
+
+	/**
+	 * Like count(), but also prints the number of positions below each root move.
+	 */
+	long divide(int color, int depth) {
+		if(board.hasNetwork(Board.BLACK) || board.hasNetwork(Board.WHITE)) {
+			return 0;
+		}
+		int[] moves = buffers[depth-1];
+		int count = board.generateMoves(color, moves);
+		if(check) {
+			check(moves, count, color);
+		}
+		Arrays.sort(moves, 0, count);
+		long total = 0;
+		for(int i = 0; i < count; i++) {
+			long below = countBelow(moves[i], color, depth);
+			System.out.println(format(moves[i]) + " " + below);
+			total += below;
+		}
+		System.out.println();
+		return total;
+	}
+
+	/**
+	 * Returns the number of positions depth-1 moves below the encoded move code,
+	 * made by color.
+	 */
+	private long countBelow(int code, int color, int depth) {
+		long key = board.hashKey(color);
+		long black = board.chips[Board.BLACK];
+		long white = board.chips[Board.WHITE];
+		int blackLinks = board.linkCount[Board.BLACK];
+		int whiteLinks = board.linkCount[Board.WHITE];
+		board.makeMove(code, color);
+		long total = count(1 - color, depth - 1);
+		board.undoMove(code, color);
+		if(check && (board.hashKey(color) != key || board.chips[Board.BLACK] != black
+				|| board.chips[Board.WHITE] != white || board.linkCount[Board.BLACK] != blackLinks
+				|| board.linkCount[Board.WHITE] != whiteLinks)) {
+			fail("undoing " + format(code) + " did not restore the position", color);
+		}
+		return total;
+	}
+
+	/**
+	 * Fails unless the count encoded moves are exactly the moves isLegalMove accepts
+	 * for color, each generated once.
+	 */
+	private void check(int[] moves, int count, int color) {
+		for(int i = 0; i < count; i++) {
+			if(generated[moves[i]]) {
+				fail(format(moves[i]) + " generated twice", color);
+			}
+			generated[moves[i]] = true;
+		}
+		int squares = Board.SIZE * Board.SIZE;
+		for(int to = 0; to < squares; to++) {
+			checkCandidate((Move.ADD << 12) | (to << 6), color);
+			for(int from = 0; from < squares; from++) {
+				checkCandidate((Move.STEP << 12) | (to << 6) | from, color);
+			}
+		}
+		for(int i = 0; i < count; i++) {
+			generated[moves[i]] = false;
+		}
+		checked++;
+	}
+
+	private void checkCandidate(int code, int color) {
+		boolean legal = board.isLegalMove(Board.decode(code), color);
+		if(legal && !generated[code]) {
+			fail(format(code) + " is legal but was not generated", color);
+		} else if(!legal && generated[code]) {
+			fail(format(code) + " was generated but is not legal", color);
+		}
+	}
+
+	private void fail(String message, int color) {
+		String player = color == Board.WHITE ? "White" : "Black";
+		throw new IllegalStateException(message + " (" + player + " to move)\n" + board);
+	}
+
+	/**
+	 * Returns a new board with the setup moves played on it through a MachinePlayer.
+	 * @param moves	the moves of the game so far, White first, as accepted by parse()
+	 * @throws IllegalArgumentException if a move cannot be read or is illegal
+	 */
+	static Board setUp(String[] moves) {
+		int toMove = moves.length % 2 == 0 ? Board.WHITE : Board.BLACK;
+		MachinePlayer player = new MachinePlayer(toMove, 1);
+		int color = Board.WHITE;
+		for(String token : moves) {
+			Move m = parse(token);
+			boolean legal = color == toMove ? player.forceMove(m) : player.opponentMove(m);
+			if(!legal) {
+				throw new IllegalArgumentException("Illegal setup move " + token);
+			}
+			color = 1 - color;
+		}
+		return player.board;
+	}
+
+	/**
+	 * Reads a move: "xy" adds a chip at (x, y) and "ab-xy" steps the chip on (a, b) to (x, y).
+	 * @throws IllegalArgumentException if token is neither
+	 */
+	static Move parse(String token) {
+		if(token.length() == 2) {
+			return new Move(digit(token, 0), digit(token, 1));
+		} else if(token.length() == 5 && token.charAt(2) == '-') {
+			return new Move(digit(token, 3), digit(token, 4), digit(token, 0), digit(token, 1));
+		}
+		throw new IllegalArgumentException("Bad move " + token);
+	}
+
+	private static int digit(String token, int i) {
+		int d = token.charAt(i) - '0';
+		if(d < 0 || d >= Board.SIZE) {
+			throw new IllegalArgumentException("Bad move " + token);
+		}
+		return d;
+	}
+
+	/**
+	 * Writes the encoded move code in the form read by parse().
+	 */
+	static String format(int code) {
+		int to = (code >>> 6) & 0x3F;
+		int from = code & 0x3F;
+		String dest = "" + to / Board.SIZE + to % Board.SIZE;
+		if(code >>> 12 == Move.STEP) {
+			return "" + from / Board.SIZE + from % Board.SIZE + "-" + dest;
+		}
+		return dest;
+	}
+
+	public static void main(String[] args) {
+		boolean divide = false;
+		boolean check = false;
+		int i = 0;
+		for(; i < args.length && args[i].startsWith("-"); i++) {
+			if(args[i].equals("-divide")) {
+				divide = true;
+			} else if(args[i].equals("-check")) {
+				check = true;
+			} else {
+				usage();
+				return;
+			}
+		}
+		if(i == args.length) {
+			usage();
+			return;
+		}
+		int depth;
+		try {
+			depth = Integer.parseInt(args[i]);
+		} catch(NumberFormatException e) {
+			usage();
+			return;
+		}
+		if(depth < 1) {
+			usage();
+			return;
+		}
+		String[] setup = Arrays.copyOfRange(args, i + 1, args.length);
+		Board board = setUp(setup);
+		int color = setup.length % 2 == 0 ? Board.WHITE : Board.BLACK;
+		Perft perft = new Perft(board, depth, check);
+
+		long start = System.nanoTime();
+		long total = divide ? perft.divide(color, depth) : perft.count(color, depth);
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.printf("depth %d: %d positions in %.3f s (%.0f positions/s)%n",
+				depth, total, seconds, total / Math.max(seconds, 1e-9));
+		if(check) {
+			System.out.println(perft.checked + " nodes checked against isLegalMove");
+		}
+	}
+
+	private static void usage() {
+		System.err.println("Usage: java player.Perft [-divide] [-check] depth [move ...]");
+		System.exit(1);
+	}
+}
@@ -10,6 +10,7 @@ public class Piece{
 	
 	private PieceSet mySet;
 	private Space space;
+	int slot; //Index of this piece in its PieceSet's pieces array; kept up to date by the PieceSet
 	
 	public Piece(PieceSet set, Space loc) {
 		mySet = set;
@@ -58,40 +59,31 @@ public class Piece{
 	 */
 	public LinkedList<Piece> getConnections(Piece prev) {
 		LinkedList<Piece> connections = new LinkedList<Piece>();
-		int myX = space.position()[0];
-		int myY = space.position()[1];
-		int previousXShift = getXYShifts(prev)[0];
-		int previousYShift = getXYShifts(prev)[1];
-		int nextXShift = previousXShift * -1;
-		int nextYShift = previousYShift * -1;
-		
-		for(int run = -1; run <= 1; run++) {
-			for(int rise = -1; rise <= 1; rise++) { //These for-loops denote the 8 directions in which a piece can lie
-				if((rise != 0 || run != 0)//Do not check own square
-						&& !(run == previousXShift && rise == previousYShift) //Do not check prev
-						&& !(run == nextXShift && rise == nextYShift)) {  //Do not form line with prev
-					int checkX = myX + run;
-					int checkY = myY + rise;
-					while(Board.isValidLocation(checkX, checkY)) {
-						
-						int checkType = space.getBoard().getPiece(checkX, checkY); //Check current space
-						
-						if(checkType == mySet.getColor()) { //Connection found
-							connections.add(mySet.getPiece(new Space(checkX, checkY)));
-							break;
-						} else if(checkType != -1) { //Space contains opponent's piece; stop checking this direction
-							break;
-						} else {
-							checkX += run;
-							checkY += rise; //Move on to next space
-						}
-					}
-				}
-			}
+		Board board = space.getBoard();
+		long seen = connectionMask(prev);
+		while(seen != 0) {
+			int sq = Long.numberOfTrailingZeros(seen);
+			seen &= seen - 1;
+			connections.add(mySet.getPiece(board.spaces[sq]));
 		}
 		return connections;
 	}
 	
+	/**
+	 * Returns a mask of the squares of the Pieces that are the same color as and
+	 * form connections with this Piece; pieces must not form a line with prev.
+	 * Reads the Board's connection masks, so no objects are created.
+	 * @param prev	previous piece in a network, or null
+	 */
+	public long connectionMask(Piece prev) {
+		int mySquare = space.square();
+		long seen = space.getBoard().links[mySquare];
+		if(prev != null) {
+			seen &= ~Board.line(mySquare, Board.direction(mySquare, prev.getSpace().square()));
+		}
+		return seen;
+	}
+	
 	/**
 	 * Returns the PieceSet this Piece is in
 	 */ 
@@ -112,7 +104,11 @@ public class Piece{
 	 * @param s	The space to move this piece to.
 	 */
 	public void move(Space s) {
+		Space old = space;
 		space = s;
+		if(mySet != null) {
+			mySet.pieceMoved(this, old, s);
+		}
 	}
 
 	/**
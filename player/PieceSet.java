@@ -7,10 +7,12 @@ import list.*;
  *  A class that is the set of the player's pieces on the board.
  */
 public class PieceSet{
+	public static final int MAX_PIECES = 10; //Number of chips each player has
 	private int color;
 	private int numPieces; //Number of pieces on the board
 	private Board board; //The board this pieceset is on
-	private LinkedList<Piece> pieces; //List of pieces placed on the board
+	private Piece[] pieces; //Pieces placed on the board in indices [0, numPieces); later slots keep removed pieces for reuse
+	private Piece[] bySquare; //The placed piece on each square (indexed by Space.square()), or null
 	
 	/**
 	 * Constructor for PieceSet of color col with num pieces
@@ -20,15 +22,22 @@ public class PieceSet{
 	public PieceSet(int col, Board b) {
 		color = col;
 		board = b;
-		pieces = new LinkedList<Piece>();
+		pieces = new Piece[MAX_PIECES];
+		bySquare = new Piece[Board.SIZE * Board.SIZE];
 		numPieces = 0;
 	}
 	
 	public PieceSet(int col, int[][] pieceset, Board b) {
-		color = col;
-		board = b;
-		pieces = toList(pieceset, b);
-		numPieces = pieces.size();
+		this(col, b);
+		for (int i=0; i<pieceset.length; i++){
+			Space s;
+			if (b == null){
+				s = new Space(pieceset[i][0], pieceset[i][1]);
+			} else {
+				s = b.getSpace(pieceset[i][0], pieceset[i][1]);
+			}
+			addPiece(new Piece(this, s));
+		}
 	}
 	
 	/**
@@ -53,27 +62,68 @@ public class PieceSet{
 	}
 	
 	/**
-	 * Returns the pieces in this set that have been placed
+	 * Sets the board this PieceSet is on
+	 * @param b	the board containing this set
+	 */
+	void setBoard(Board b){
+		board = b;
+	}
+	
+	/**
+	 * Returns a list of the pieces in this set that have been placed
 	 * on the board
 	 */
 	public LinkedList<Piece> getPieces() {
-		return pieces;
+		LinkedList<Piece> out = new LinkedList<Piece>();
+		for (int i=0; i<numPieces; i++){
+			out.add(pieces[i]);
+		}
+		return out;
+	}
+	
+	/**
+	 * Returns the i-th piece placed in this set.
+	 * @param i	index of the piece, 0 <= i < getSize()
+	 */
+	public Piece getPiece(int i) {
+		return pieces[i];
 	}
 	
 	/**
 	 * If s is occupied by a piece of this color, return it; return null otherwise.
+	 * Takes constant time.
 	 * @param s		Space to be checked
 	 * @return		The piece at s; null if empty or of a different color.
 	 */
 	public Piece getPiece(Space s) {
-		Iterator<Piece> piecesIt = pieces.iterator();
-		while(piecesIt.hasNext()) {
-			Piece curr = piecesIt.next();
-			if(curr.getSpace().equals(s)) { //Piece found
-				return curr;
-			}
+		if(s == null || s.square() < 0) {
+			return null;
 		}
-		return null;
+		return bySquare[s.square()];
+	}
+	
+	/**
+	 * Updates the square index when p, a piece of this set, moves from one space to another.
+	 * Called by Piece.move.
+	 * @param p		the piece being moved
+	 * @param from	the space p is leaving; may be null
+	 * @param to	the space p is moving to
+	 */
+	void pieceMoved(Piece p, Space from, Space to) {
+		if(from != null && from.square() >= 0 && bySquare[from.square()] == p) {
+			bySquare[from.square()] = null;
+		}
+		if(to.square() >= 0 && isPlaced(p)) {
+			bySquare[to.square()] = p;
+		}
+	}
+	
+	/**
+	 * Returns true iff p is one of the pieces of this set currently on the board.
+	 * Takes constant time.
+	 */
+	private boolean isPlaced(Piece p) {
+		return p.slot < numPieces && pieces[p.slot] == p;
 	}
 	
 	/**
@@ -81,83 +131,82 @@ public class PieceSet{
 	 */
 	
 	/**
-	 * Returns the List pieces as an array of the x,y positions
-	 * of each piece in the list
+	 * Returns the pieces as an array of the x,y positions
+	 * of each piece in the set
 	 */
 	public int[][] toArray() {
 	  int[][] positions = new int[numPieces][2];
-	  for (int i=0; i<pieces.size(); i++){
-		  int[] pos = pieces.get(i).getSpace().position();
+	  for (int i=0; i<numPieces; i++){
+		  int[] pos = pieces[i].getSpace().position();
 		  positions[i][0] = pos[0];
 		  positions[i][1] = pos[1];
 	  }
 	  return positions;
 	}
 	
-	/**
-	 * Returns the array of x,y positions in the given array as a
-	 * list of Pieces (the same color as this PieceSet) in those positions
-	 * @param positions the 2D array of x,y positions
-	 * @param b the board the list of pieces is on
-	 */
-	public LinkedList<Piece> toList(int[][] positions, Board b) {
-	  if (b==null){ //If not specified a board for the pieces, use the board of this pieceset
-		  b = board;
-	  }
-	  LinkedList<Piece> pieceset = new LinkedList<Piece>();
-	  for (int i=0; i<positions.length; i++){
-		Piece temp = new Piece(this, new Space(positions[i][0], positions[i][1], b));
-		pieceset.addLast(temp);
-	  }
-	  return pieceset;
-	}
-	
 	/**
 	 * Adds a piece to this PieceSet.
 	 * @param p	the piece to be added
 	 */
 	public void addPiece(Piece p) {
-		pieces.add(p);
+		pieces[numPieces] = p;
+		p.slot = numPieces;
 		p.setSet(this);
 		numPieces++;
+		if(p.getSpace().square() >= 0) {
+			bySquare[p.getSpace().square()] = p;
+		}
 	}
 	
 	/**
-	 * EVALUATING A BOARD
+	 * Adds a piece at s to this PieceSet, reusing a previously removed Piece if there is one.
+	 * @param s	the space the new piece occupies
 	 */
+	void addPiece(Space s) {
+		Piece p = pieces[numPieces];
+		if(p == null) {
+			p = new Piece(this, s);
+			p.slot = numPieces;
+			pieces[numPieces] = p;
+		} else {
+			p.move(s);
+		}
+		numPieces++;
+		bySquare[s.square()] = p;
+	}
 	
 	/**
-	 * Returns the sum of all connections for all pieces in this pieceset
-	 * @return int number of connections total in this pieceset
+	 * Removes the piece at s from this PieceSet. The Piece object is kept for reuse by
+	 * addPiece(Space).
+	 * @param s	the space of the piece to be removed
+	 * @return	true iff a piece was removed
 	 */
-	public int countConnections() {
-		int total = 0;
-		Iterator<Piece> piecesIt = pieces.iterator();
-		while(piecesIt.hasNext()) {
-			total += piecesIt.next().getConnections(null).size();
+	boolean removePiece(Space s) {
+		Piece p = getPiece(s);
+		if(p == null) {
+			return false;
 		}
-		return total;
+		numPieces--;
+		Piece last = pieces[numPieces];
+		pieces[p.slot] = last; //Keep placed pieces contiguous
+		last.slot = p.slot;
+		pieces[numPieces] = p;
+		p.slot = numPieces;
+		bySquare[s.square()] = null;
+		return true;
 	}
 	
 	/**
-	 * Returns true if this piece is in the starting goal (left for white, top for black)
-	 * for its color
-	 * @param p Piece to check
-	 * @return  true if this piece is in the start goal for its color
+	 * EVALUATING A BOARD
 	 */
-	private boolean isStartPiece(Piece p){
-		return ((color == Board.BLACK && p.getSpace().position()[1] == 0)
-				 ||(color == Board.WHITE && p.getSpace().position()[0] == 0));
-	}
 	
 	/**
-	 * Returns true if this piece is in the end goal for this color (right for white, bottom for black)
-	 * @param p	Piece to check
-	 * @return	true if this piece is in the end goal for this color
+	 * Returns the sum of all connections for all pieces in this pieceset. The board keeps
+	 * this total up to date as moves are made, so this takes constant time.
+	 * @return int number of connections total in this pieceset
 	 */
-	private boolean isEndPiece(Piece p) {
-		return ((color == Board.BLACK && p.getSpace().position()[1] == Board.SIZE - 1)
-				 ||(color == Board.WHITE && p.getSpace().position()[0] == Board.SIZE - 1));
+	public int countConnections() {
+		return board.linkCount[color];
 	}
 	
 	/**
@@ -166,12 +215,8 @@ public class PieceSet{
 	 * @return 1 if there is at least one piece in this pieceset's end goal, 0 otherwise
 	 */
 	public int hasEndPiece() {
-		Iterator<Piece> piecesIt = pieces.iterator();
-		while(piecesIt.hasNext()) {
-			Piece p = piecesIt.next();
-			if(isEndPiece(p)) {
-				return 1;
-			}
+		if((board.chips[color] & Board.END_GOAL[color]) != 0) {
+			return 1;
 		}
 		return 0;
 	}
@@ -182,76 +227,12 @@ public class PieceSet{
 	 * @return 1 if there is at least one piece in this pieceset's start goal, 0 otherwise
 	 */
 	public int hasStartPiece() {
-		Iterator<Piece> piecesIt = pieces.iterator();
-		while(piecesIt.hasNext()) {
-			Piece p = piecesIt.next();
-			if(isStartPiece(p)) {
-				return 1;
-			}
+		if((board.chips[color] & Board.START_GOAL[color]) != 0) {
+			return 1;
 		}
 		return 0;
 	}
 	
-	/**
-	 * Returns a list containing the pieces on the starting end of the board (left edge
-	 * for white, top edge for black).
-	 * @return	list containing starting pieces for this PieceSet
-	 */
-	private LinkedList<Piece> getStartPieces() {
-		LinkedList<Piece> out = new LinkedList<Piece>();
-		Iterator<Piece> piecesIt = pieces.iterator();
-		while(piecesIt.hasNext()){
-			Piece p = piecesIt.next();
-			if(isStartPiece(p)){ //Piece is a starting piece
-				out.add(p);
-			}
-		}
-		return out;
-	}
-	
-	/**
-	 * Recursive method that checks whether a given piece is part of a network.
-	 * prev == null indicates that this piece is in the start goal.
-	 * @param curr		Piece currently being checked
-	 * @param prev		Previous piece checked
-	 * @param length	Length of the network at this point
-	 * @param seen		Pieces previously seen in this network; repeats are not allowed
-	 * @return			true iff this piece is in a network
-	 */
-	private boolean hasNetwork(Piece curr, LinkedList<Piece> seen) {
-		Piece prev;
-		if(seen.size() == 0) { //First piece in the network; no previous
-			prev = null;
-		} else {
-			prev = seen.get(0);
-		}
-		LinkedList<Piece> connections = curr.getConnections(prev); //seen.get(0) is the previous piece
-		if(seen.contains(curr)) { //curr already in this network
-			return false;
-		} else if(seen.size() >= 1 && isStartPiece(curr)){ //check to not add more start goal pieces if seen already has such a piece
-			return false;
-		} else if(isEndPiece(curr)) {
-			if(seen.size() + 1 >= 6){
-				return true;
-			} else {
-				return false; //Only one piece in each goal allowed
-			}
-		} else if (seen.size() == 10 || connections.size() == 0){ //Negative base case
-			return false;
-		} else { //Check all connected pieces for completed networks
-			Iterator<Piece> connIt = connections.iterator();
-			LinkedList<Piece> newSeen = seen.copy();
-			newSeen.addFirst(curr); //Add this piece to the list of seen pieces
-			while(connIt.hasNext()){
-				Piece next = connIt.next();
-				if(hasNetwork(next, newSeen)) { //Recursive call
-					return true;
-				}
-			}
-		}
-		return false;
-	}
-	
 	/**
 	 * Returns true iff this PieceSet has a winning network. A winning network:
 	 * 		-Is at least of length 6.
@@ -260,15 +241,7 @@ public class PieceSet{
 	 * @return	true if we win
 	 */
 	public boolean victory() {
-		Iterator<Piece> starts = getStartPieces().iterator();
-		while(starts.hasNext()){ //Check all pieces in starting goal
-			Piece p = starts.next();
-			LinkedList<Piece> seen = new LinkedList<Piece>();
-			if(hasNetwork(p, seen)){ //Start a network of length 1 containing just this piece.
-				return true;
-			}
-		}
-		return false;
+		return board.hasNetwork(color);
 	}
 	
 	/**
@@ -276,9 +249,8 @@ public class PieceSet{
 	 */
 	public void printConnections() {
 		System.out.print("\n");
-		Iterator<Piece> piecesIt = pieces.iterator();
-		while(piecesIt.hasNext()){
-			Piece p = piecesIt.next();
+		for (int i=0; i<numPieces; i++){
+			Piece p = pieces[i];
 			LinkedList<Piece> conns = p.getConnections(null);
 			System.out.println("Connections to " + p + ":");
 			System.out.println(conns);
@@ -295,11 +267,9 @@ public class PieceSet{
 		} else {
 			col = "White";
 		}
-		Iterator<Piece> piecesIt = pieces.iterator();
 		String out = col + " pieces:\n";
-		while(piecesIt.hasNext()) {
-			Piece p = piecesIt.next();
-			out += "\t" + p + "\n";
+		for (int i=0; i<numPieces; i++){
+			out += "\t" + pieces[i] + "\n";
 		}
 		return out;
 	}
@@ -0,0 +1,142 @@
+/* SearchEvent.java */
+
+package player;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ *  Flight Recorder event for one MachinePlayer.chooseMove() search. Costs nothing
+ *  unless a recording has the event enabled.
+ */
+@Name("player.Search")
+@Label("Search")
+@Category({"Network", "Search"})
+@Description("A MachinePlayer choosing a move")
+class SearchEvent extends Event {
+
+	@Label("Color")
+	@Description("0 for black, 1 for white")
+	int color;
+
+	@Label("Move")
+	String move;
+
+	@Label("Score")
+	int score;
+
+	@Label("Depth")
+	@Description("Deepest completed iteration")
+	int depth;
+
+	@Label("From Book")
+	@Description("True if the move came from the opening book without a search")
+	boolean book;
+
+	@Label("Solved")
+	@Description("True if the move came from the forced-network solver without a search")
+	boolean solved;
+
+	@Label("Pondered")
+	@Description("True if the move came from a search begun on the opponent's time")
+	boolean pondered;
+
+	@Label("Threads")
+	int threads;
+
+	@Label("Nodes")
+	long nodes;
+
+	@Label("Quiescence Nodes")
+	@Description("Nodes searched past the horizon, included in Nodes")
+	long quiescenceNodes;
+
+	@Label("Evaluations")
+	long evaluations;
+
+	@Label("Victory Checks")
+	long victoryChecks;
+
+	@Label("Table Probes")
+	long tableProbes;
+
+	@Label("Table Hits")
+	long tableHits;
+
+	@Label("Cache Probes")
+	@Description("Evaluation cache lookups")
+	long cacheProbes;
+
+	@Label("Cache Hits")
+	long cacheHits;
+
+	@Label("Cutoffs")
+	long cutoffs;
+
+	@Label("First Move Cutoffs")
+	long firstMoveCutoffs;
+
+	@Label("Re-searches")
+	@Description("Zero-window searches that failed high and were searched again")
+	long researches;
+
+	@Label("Aspiration Failures")
+	@Description("Root searches whose score fell outside the aspiration window")
+	long aspirationFailures;
+
+	@Label("Null-Move Cutoffs")
+	long nullMoveCutoffs;
+
+	@Label("Reductions")
+	@Description("Late moves searched to a reduced depth")
+	long reductions;
+
+	@Label("Reduction Re-searches")
+	@Description("Reduced moves that beat alpha and were searched again at full depth")
+	long reductionResearches;
+
+	@Label("Move Generation Time")
+	@Description("Estimated from sampled nodes")
+	@Timespan(Timespan.NANOSECONDS)
+	long generateTime;
+
+	@Label("Evaluation Time")
+	@Description("Estimated from sampled nodes")
+	@Timespan(Timespan.NANOSECONDS)
+	long evaluateTime;
+
+	@Label("Victory Check Time")
+	@Description("Estimated from sampled nodes")
+	@Timespan(Timespan.NANOSECONDS)
+	long victoryTime;
+
+	/**
+	 * Copies the counters in stats into this event.
+	 */
+	void set(SearchStats stats) {
+		score = stats.score;
+		depth = stats.depth;
+		nodes = stats.nodes;
+		quiescenceNodes = stats.quiescenceNodes;
+		evaluations = stats.evaluations;
+		victoryChecks = stats.victoryChecks;
+		tableProbes = stats.tableProbes;
+		tableHits = stats.tableHits;
+		cacheProbes = stats.cacheProbes;
+		cacheHits = stats.cacheHits;
+		cutoffs = stats.cutoffs;
+		firstMoveCutoffs = stats.firstMoveCutoffs;
+		researches = stats.researches;
+		aspirationFailures = stats.aspirationFailures;
+		nullMoveCutoffs = stats.nullMoveCutoffs;
+		reductions = stats.reductions;
+		reductionResearches = stats.reductionResearches;
+		generateTime = stats.getGenerateNanos();
+		evaluateTime = stats.getEvaluateNanos();
+		victoryTime = stats.getVictoryNanos();
+	}
+}
@@ -0,0 +1,129 @@
+/* SearchMonitor.java */
+
+package player;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ *  Publishes the SearchStats of a MachinePlayer as an MBean, so that a running
+ *  player can be watched with jconsole or any other JMX client. Players register
+ *  one only when the player.jmx system property is true, since the platform MBean
+ *  server keeps every registered player alive.
+ */
+public class SearchMonitor implements SearchMonitorMBean {
+
+	private static final AtomicInteger ids = new AtomicInteger(); //Tells players of one color apart
+
+	private volatile SearchStats last = new SearchStats(); //Copy of the latest search's stats
+	private volatile long moves; //Written only by the player's thread
+	private volatile long totalNodes;
+	private volatile long totalSearchNanos;
+
+	/**
+	 * Creates a monitor for a player of the given color and registers it with the
+	 * platform MBean server as player:type=MachinePlayer,color=...,id=....
+	 * @return the monitor, or null if it could not be registered
+	 */
+	static SearchMonitor register(int color) {
+		SearchMonitor monitor = new SearchMonitor();
+		String name = "player:type=MachinePlayer,color=" + (color == Board.WHITE ? "white" : "black")
+				+ ",id=" + ids.incrementAndGet();
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(monitor, new ObjectName(name));
+		} catch(JMException e) {
+			return null; //Monitoring is optional; the player works without it
+		}
+		return monitor;
+	}
+
+	/**
+	 * Records the stats of a search that has just finished.
+	 */
+	void record(SearchStats stats) {
+		last = stats.copy();
+		moves++;
+		totalNodes += stats.nodes;
+		totalSearchNanos += stats.searchNanos;
+	}
+
+	public long getMoves() {
+		return moves;
+	}
+
+	public long getTotalNodes() {
+		return totalNodes;
+	}
+
+	public long getTotalSearchMillis() {
+		return totalSearchNanos / 1000000;
+	}
+
+	public double getAverageNodesPerSecond() {
+		long nanos = totalSearchNanos;
+		return nanos == 0 ? 0 : totalNodes * 1e9 / nanos;
+	}
+
+	public int getLastDepth() {
+		return last.depth;
+	}
+
+	public int getLastScore() {
+		return last.score;
+	}
+
+	public long getLastNodes() {
+		return last.nodes;
+	}
+
+	public double getLastNodesPerSecond() {
+		return last.getNodesPerSecond();
+	}
+
+	public long getLastEvaluations() {
+		return last.evaluations;
+	}
+
+	public long getLastVictoryChecks() {
+		return last.victoryChecks;
+	}
+
+	public double getLastTableHitRate() {
+		SearchStats s = last;
+		return s.tableProbes == 0 ? 0 : (double)s.tableHits / s.tableProbes;
+	}
+
+	public double getLastCacheHitRate() {
+		return last.getCacheHitRate();
+	}
+
+	public long getLastCutoffs() {
+		return last.cutoffs;
+	}
+
+	public double getLastFirstMoveCutoffRate() {
+		return last.getFirstMoveCutoffRate();
+	}
+
+	public long[] getLastCutoffsAtPly() {
+		return last.getCutoffsAtPly();
+	}
+
+	public long getLastSearchMillis() {
+		return last.searchNanos / 1000000;
+	}
+
+	public long getLastGenerateMillis() {
+		return last.getGenerateNanos() / 1000000;
+	}
+
+	public long getLastEvaluateMillis() {
+		return last.getEvaluateNanos() / 1000000;
+	}
+
+	public long getLastVictoryMillis() {
+		return last.getVictoryNanos() / 1000000;
+	}
+}
@@ -0,0 +1,48 @@
+/* SearchMonitorMBean.java */
+
+package player;
+
+/**
+ *  JMX view of a MachinePlayer's searches; see SearchMonitor. Attributes named
+ *  Last... describe the most recent chooseMove() and the others all of them.
+ */
+public interface SearchMonitorMBean {
+
+	public long getMoves();
+
+	public long getTotalNodes();
+
+	public long getTotalSearchMillis();
+
+	public double getAverageNodesPerSecond();
+
+	public int getLastDepth();
+
+	public int getLastScore();
+
+	public long getLastNodes();
+
+	public double getLastNodesPerSecond();
+
+	public long getLastEvaluations();
+
+	public long getLastVictoryChecks();
+
+	public double getLastTableHitRate();
+
+	public double getLastCacheHitRate();
+
+	public long getLastCutoffs();
+
+	public double getLastFirstMoveCutoffRate();
+
+	public long[] getLastCutoffsAtPly();
+
+	public long getLastSearchMillis();
+
+	public long getLastGenerateMillis();
+
+	public long getLastEvaluateMillis();
+
+	public long getLastVictoryMillis();
+}
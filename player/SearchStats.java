@@ -0,0 +1,270 @@
+/* SearchStats.java */
+
+package player;
+
+/**
+ *  Counters gathered by one search: how many nodes it visited, what happened at
+ *  them, and roughly where the time went. Counting costs an increment per event.
+ *  Timing every call would cost more than some of the calls themselves, so only
+ *  one node in TIMING_INTERVAL+1 is timed and the phase times are scaled up from
+ *  those; they are estimates, good for comparing phases rather than to the
+ *  microsecond.
+ */
+public class SearchStats {
+
+	static final int TIMING_INTERVAL = 15; //Time one node in TIMING_INTERVAL+1; a power of two minus one
+
+	long nodes; //Positions visited
+	long quiescenceNodes; //Positions visited past the horizon, included in nodes
+	long evaluations; //Calls to Board.evaluate() at the horizon
+	long victoryChecks; //Positions checked for a network before expanding them
+	long tableProbes; //Transposition table lookups
+	long tableHits; //Lookups that found the position
+	long cacheProbes; //Evaluation cache lookups
+	long cacheHits; //Lookups that found a usable value
+	long cutoffs; //Beta cutoffs
+	long firstMoveCutoffs; //Beta cutoffs on the first move tried
+	long researches; //Zero-window searches that failed high and were searched again
+	long aspirationFailures; //Root searches whose score fell outside the aspiration window
+	long nullMoveCutoffs; //Nodes cut off by a null move
+	long reductions; //Late moves searched to a reduced depth
+	long reductionResearches; //Reduced moves that beat alpha and were searched again at full depth
+	long[] cutoffsAtPly = new long[Searcher.MAX_DEPTH + 1]; //Beta cutoffs by distance from the root
+	long generateNanos; //Sampled time in Board.generateMoves()
+	long evaluateNanos; //Sampled time in Board.evaluate()
+	long victoryNanos; //Sampled time in PieceSet.victory()
+	long searchNanos; //Wall-clock time of the whole search
+	int depth; //Deepest completed iteration; 0 if none
+	int score; //Score of the move chosen, for the player to move
+
+	/**
+	 * Returns true iff the node with the given count should be timed.
+	 */
+	static boolean timed(long nodes) {
+		return (nodes & TIMING_INTERVAL) == 0;
+	}
+
+	/**
+	 * Sets every counter to zero.
+	 */
+	void clear() {
+		nodes = 0;
+		quiescenceNodes = 0;
+		evaluations = 0;
+		victoryChecks = 0;
+		tableProbes = 0;
+		tableHits = 0;
+		cacheProbes = 0;
+		cacheHits = 0;
+		cutoffs = 0;
+		firstMoveCutoffs = 0;
+		researches = 0;
+		aspirationFailures = 0;
+		nullMoveCutoffs = 0;
+		reductions = 0;
+		reductionResearches = 0;
+		for(int i = 0; i < cutoffsAtPly.length; i++) {
+			cutoffsAtPly[i] = 0;
+		}
+		generateNanos = 0;
+		evaluateNanos = 0;
+		victoryNanos = 0;
+		searchNanos = 0;
+		depth = 0;
+		score = 0;
+	}
+
+	/**
+	 * Makes this a copy of other.
+	 */
+	void set(SearchStats other) {
+		clear();
+		add(other);
+		searchNanos = other.searchNanos;
+		depth = other.depth;
+		score = other.score;
+	}
+
+	/**
+	 * Adds the counters of other, a search run alongside this one, to this one. The
+	 * depth, score and search time are left alone.
+	 */
+	void add(SearchStats other) {
+		nodes += other.nodes;
+		quiescenceNodes += other.quiescenceNodes;
+		evaluations += other.evaluations;
+		victoryChecks += other.victoryChecks;
+		tableProbes += other.tableProbes;
+		tableHits += other.tableHits;
+		cacheProbes += other.cacheProbes;
+		cacheHits += other.cacheHits;
+		cutoffs += other.cutoffs;
+		firstMoveCutoffs += other.firstMoveCutoffs;
+		researches += other.researches;
+		aspirationFailures += other.aspirationFailures;
+		nullMoveCutoffs += other.nullMoveCutoffs;
+		reductions += other.reductions;
+		reductionResearches += other.reductionResearches;
+		for(int i = 0; i < cutoffsAtPly.length; i++) {
+			cutoffsAtPly[i] += other.cutoffsAtPly[i];
+		}
+		generateNanos += other.generateNanos;
+		evaluateNanos += other.evaluateNanos;
+		victoryNanos += other.victoryNanos;
+	}
+
+	/**
+	 * Returns a copy of this.
+	 */
+	public SearchStats copy() {
+		SearchStats s = new SearchStats();
+		s.set(this);
+		return s;
+	}
+
+	public long getNodes() {
+		return nodes;
+	}
+
+	public long getQuiescenceNodes() {
+		return quiescenceNodes;
+	}
+
+	public long getEvaluations() {
+		return evaluations;
+	}
+
+	public long getVictoryChecks() {
+		return victoryChecks;
+	}
+
+	public long getTableProbes() {
+		return tableProbes;
+	}
+
+	public long getTableHits() {
+		return tableHits;
+	}
+
+	public long getCacheProbes() {
+		return cacheProbes;
+	}
+
+	public long getCacheHits() {
+		return cacheHits;
+	}
+
+	/**
+	 * Returns the fraction of evaluation cache lookups that found a usable value;
+	 * 0 if there were none.
+	 */
+	public double getCacheHitRate() {
+		return cacheProbes == 0 ? 0 : (double)cacheHits / cacheProbes;
+	}
+
+	public long getCutoffs() {
+		return cutoffs;
+	}
+
+	/**
+	 * Returns the fraction of cutoffs that came from the first move tried, a measure
+	 * of move ordering; 0 if there were none.
+	 */
+	public double getFirstMoveCutoffRate() {
+		return cutoffs == 0 ? 0 : (double)firstMoveCutoffs / cutoffs;
+	}
+
+	public long getResearches() {
+		return researches;
+	}
+
+	public long getAspirationFailures() {
+		return aspirationFailures;
+	}
+
+	public long getNullMoveCutoffs() {
+		return nullMoveCutoffs;
+	}
+
+	public long getReductions() {
+		return reductions;
+	}
+
+	public long getReductionResearches() {
+		return reductionResearches;
+	}
+
+	/**
+	 * Returns the number of beta cutoffs at each ply, the root being ply 0.
+	 */
+	public long[] getCutoffsAtPly() {
+		return cutoffsAtPly.clone();
+	}
+
+	/**
+	 * Returns the estimated time spent generating moves, in nanoseconds.
+	 */
+	public long getGenerateNanos() {
+		return generateNanos * (TIMING_INTERVAL + 1);
+	}
+
+	/**
+	 * Returns the estimated time spent in Board.evaluate(), in nanoseconds.
+	 */
+	public long getEvaluateNanos() {
+		return evaluateNanos * (TIMING_INTERVAL + 1);
+	}
+
+	/**
+	 * Returns the estimated time spent checking for networks, in nanoseconds.
+	 */
+	public long getVictoryNanos() {
+		return victoryNanos * (TIMING_INTERVAL + 1);
+	}
+
+	public long getSearchNanos() {
+		return searchNanos;
+	}
+
+	public int getDepth() {
+		return depth;
+	}
+
+	public int getScore() {
+		return score;
+	}
+
+	/**
+	 * Returns the nodes visited per second of search; 0 if no time was measured.
+	 */
+	public double getNodesPerSecond() {
+		return searchNanos == 0 ? 0 : nodes * 1e9 / searchNanos;
+	}
+
+	public String toString() {
+		StringBuilder s = new StringBuilder();
+		s.append("depth ").append(depth).append(", score ").append(score);
+		s.append(", ").append(nodes).append(" nodes in ").append(searchNanos / 1000000).append(" ms");
+		s.append(" (").append(Math.round(getNodesPerSecond())).append(" nps, ")
+				.append(quiescenceNodes).append(" past the horizon)\n");
+		s.append("evaluations ").append(evaluations).append(", victory checks ").append(victoryChecks);
+		s.append(", table hits ").append(tableHits).append("/").append(tableProbes);
+		s.append(", cache hits ").append(cacheHits).append("/").append(cacheProbes).append("\n");
+		s.append("cutoffs ").append(cutoffs).append(" (")
+				.append(Math.round(getFirstMoveCutoffRate() * 100)).append("% on the first move), by ply:");
+		int last = cutoffsAtPly.length - 1;
+		while(last > 0 && cutoffsAtPly[last] == 0) {
+			last--;
+		}
+		for(int i = 0; i <= last; i++) {
+			s.append(" ").append(cutoffsAtPly[i]);
+		}
+		s.append("\n");
+		s.append("re-searches ").append(researches).append(", aspiration failures ").append(aspirationFailures).append("\n");
+		s.append("null-move cutoffs ").append(nullMoveCutoffs).append(", reductions ").append(reductions)
+				.append(" (").append(reductionResearches).append(" searched again)\n");
+		s.append(String.format("time (est.) generating %.1f ms, evaluating %.1f ms, checking networks %.1f ms",
+				getGenerateNanos() / 1e6, getEvaluateNanos() / 1e6, getVictoryNanos() / 1e6));
+		return s.toString();
+	}
+}
@@ -0,0 +1,529 @@
+/* Searcher.java */
+
+package player;
+
+/**
+ *  Runs the game-tree search for a MachinePlayer on a board of its own. A player
+ *  searching with several threads has one Searcher per thread; they share only
+ *  the transposition table.
+ */
+class Searcher {
+
+	public static final int MAX_DEPTH = 32; //Deepest iteration a search will start
+	public static final int MAX_QUIESCENCE_DEPTH = 8; //Most plies the quiescence search may add past the horizon
+	private static final int CLOCK_INTERVAL = 255; //Check the clock every CLOCK_INTERVAL+1 nodes
+	private static final int SCAN_CLOCK_INTERVAL = 31; //Also check it every SCAN_CLOCK_INTERVAL+1 threat scans, which cost far more than a node
+	static final long MIN_MARGIN = 5; //Least time kept back from a budget, in milliseconds, for the last nodes and the reply
+	private static final int HISTORY_SIZE = 1 << 14; //Number of distinct encoded moves
+	private static final int HISTORY_MAX = 1 << 24; //History scores are halved when one passes this
+	static final int ASPIRATION_WINDOW = 200; //Half-width of the first window around the previous iteration's score
+	static final int NULL_MOVE_REDUCTION = 2; //Extra plies taken off the search after a null move
+	static final int REDUCE_AFTER = 3; //Moves searched at full depth before late moves are reduced
+	static final int LATE_MOVE_REDUCTION = 2; //Plies taken off a late move; even, as scores swing between odd and even depths
+
+	Board board; //Board searched; moves are made and undone in place
+	TranspositionTable table; //Results of previous searches; may be shared between threads
+	EvaluationCache cache; //Values of horizon positions; may be shared between threads; null for none
+
+	int horizon; //Depth of the iteration in progress
+	long deadline; //System.nanoTime() at which the current search must stop; 0 for none
+	long scans; //Threat scans made by quiesce() in the current search
+	volatile boolean stopped; //Set by another thread to end the current search
+	boolean aborted; //True once the current iteration has been cut short
+	SearchStats stats; //Counters for the current search
+	int[][] killers; //Per ply, the two latest moves that caused a cutoff there, as Board.encode()
+	int[][] history; //Per color and encoded move, how much the move has caused cutoffs; kept across searches
+	int[][] moveBuffers; //Per ply, the encoded moves generated there
+	int[][] keyBuffers; //Per ply, the ordering keys of the moves in moveBuffers
+	int rootMove; //Best move found at the root in the iteration in progress, as Board.encode()
+	int quiescenceDepth; //Plies of network threats and blocks searched past the horizon; 0 for none
+	boolean nullMove; //True to try null-move pruning
+	boolean reductions; //True to search late moves to a reduced depth
+
+	/**
+	 * Creates a Searcher for board that records results in table.
+	 */
+	Searcher(Board board, TranspositionTable table) {
+		this.board = board;
+		this.table = table;
+		killers = new int[MAX_DEPTH + 1][2];
+		history = new int[2][HISTORY_SIZE];
+		moveBuffers = new int[MAX_DEPTH + MAX_QUIESCENCE_DEPTH][Board.MAX_MOVES];
+		keyBuffers = new int[MAX_DEPTH][Board.MAX_MOVES];
+		stats = new SearchStats();
+	}
+
+	/**
+	 * Searches the board by iterative deepening for depths firstDepth, firstDepth+1, ...
+	 * up to maxDepth. An iteration that is cut short by the deadline or by stop() is
+	 * discarded; unless stopped, the first iteration always completes so there is a
+	 * move to play. The counters for the search are left in stats.
+	 *
+	 * Each iteration after the first is searched with an aspiration window around
+	 * the previous score, which is a fair guess at the next one, since a narrower
+	 * window cuts off more. The window is fairly wide because scores swing between
+	 * odd and even depths, with the player to move at the horizon. If the score
+	 * falls outside it, the iteration is searched again with that side widened.
+	 * @param color		the player to move
+	 * @param firstDepth	depth of the first iteration
+	 * @param maxDepth	depth of the last iteration; at most MAX_DEPTH
+	 * @param moveTime	time budget in milliseconds, or 0 for none
+	 * @return			the best move of the deepest completed iteration; null if none completed
+	 */
+	Decision search(int color, int firstDepth, int maxDepth, long moveTime) {
+		long start = System.nanoTime();
+		deadline = 0;
+		if(moveTime > 0) {
+			//Stop a little early: the clock is only read now and then, and the move still has to be returned
+			deadline = start + (moveTime - Math.max(MIN_MARGIN, moveTime / 10)) * 1000000L;
+		}
+		scans = 0;
+		stats.clear();
+		aborted = false;
+		for(int i = 0; i < killers.length; i++) {
+			killers[i][0] = 0;
+			killers[i][1] = 0;
+		}
+		ageHistory();
+		Decision best = null;
+		for(horizon = firstDepth; horizon <= Math.min(maxDepth, MAX_DEPTH); horizon++) {
+			rootMove = 0;
+			IterationEvent event = new IterationEvent();
+			event.begin();
+			int score;
+			if(best == null) {
+				score = minimax(color, 0, horizon, -Integer.MAX_VALUE, Integer.MAX_VALUE, true, false);
+			} else {
+				score = aspirate(color, best.score);
+			}
+			if(event.shouldCommit()) {
+				event.depth = horizon;
+				event.score = score;
+				event.nodes = stats.nodes;
+				event.aborted = aborted;
+				event.commit();
+			}
+			if(aborted) {
+				break;
+			}
+			best = new Decision(Board.decode(rootMove), score);
+			stats.depth = horizon;
+			stats.score = score;
+			if(best.score == Integer.MAX_VALUE || best.score == -Integer.MAX_VALUE) {
+				break; //The game is decided within this depth; searching deeper changes nothing
+			}
+			long elapsed = System.nanoTime() - start;
+			if(moveTime > 0 && elapsed * 2 > moveTime * 1000000L) {
+				break; //The next iteration would not finish in time
+			}
+		}
+		stats.searchNanos = System.nanoTime() - start;
+		return best;
+	}
+
+	/**
+	 * Searches the root to the current horizon with aspiration windows around guess,
+	 * the previous iteration's score. When the score falls outside the window, that
+	 * side is widened fourfold, and opened all the way if it fails again; a score
+	 * that far out is usually a win or a loss, which no window short of that holds.
+	 * @return the score of the root for color; meaningless if aborted
+	 */
+	private int aspirate(int color, int guess) {
+		long below = ASPIRATION_WINDOW; //Long, so that guess - below cannot overflow
+		long above = ASPIRATION_WINDOW;
+		while(true) {
+			int alpha = (int)Math.max(guess - below, -Integer.MAX_VALUE);
+			int beta = (int)Math.min(guess + above, Integer.MAX_VALUE);
+			rootMove = 0;
+			int score = minimax(color, 0, horizon, alpha, beta, false, false);
+			if(aborted) {
+				return score;
+			} else if(score <= alpha && alpha > -Integer.MAX_VALUE) {
+				below = below == ASPIRATION_WINDOW ? 4 * below : Integer.MAX_VALUE * 2L;
+			} else if(score >= beta && beta < Integer.MAX_VALUE) {
+				above = above == ASPIRATION_WINDOW ? 4 * above : Integer.MAX_VALUE * 2L;
+			} else {
+				return score;
+			}
+			stats.aspirationFailures++;
+		}
+	}
+
+	/**
+	 * Ends the current search as soon as possible. Safe to call from any thread.
+	 */
+	void stop() {
+		stopped = true;
+	}
+
+	/**
+	 * Returns true iff the current search has been stopped or has used up its time.
+	 * @param mustFinish	true if the iteration may only be stopped by stop()
+	 */
+	private boolean outOfTime(boolean mustFinish) {
+		return stopped || (!mustFinish && deadline != 0 && System.nanoTime() >= deadline);
+	}
+
+	/**
+	 * Implements the minimax search algorithm with alpha-beta pruning on board.
+	 * Scores are from the point of view of the player to move, so each player
+	 * maximizes the negation of its opponent's score. Positions already searched to
+	 * at least the remaining depth are answered from the transposition table. Moves
+	 * are generated into this ply's buffer and tried in the order given by orderMoves;
+	 * no objects are created. The best move at the root is left in rootMove. If the
+	 * search is cut short, aborted is set and the result must be discarded; the board
+	 * is still restored.
+	 *
+	 * The search is a principal variation search: the first move is searched with
+	 * the full window and each later move with a zero window, which only shows
+	 * whether the move beats the best so far. With good ordering it rarely does,
+	 * and the zero-window search costs much less; a move that does beat it is
+	 * searched again with the full window to get its score.
+	 *
+	 * With nullMove set, a zero-window node first lets the opponent move twice in a
+	 * row, searched NULL_MOVE_REDUCTION plies shallower. If we still reach beta
+	 * without moving, a real move would too, and the node is cut off at a fraction
+	 * of the cost. It is not tried when the opponent can complete a network at once,
+	 * since passing would be no test at all then. With reductions set, moves after
+	 * the first REDUCE_AFTER, other than the hash move and killers, are searched
+	 * LATE_MOVE_REDUCTION plies shallower unless they threaten a network. One that
+	 * still beats alpha is searched again at full depth. Either way the
+	 * search is no longer exactly minimax to the horizon.
+	 *
+	 * @param color the color of the player to move
+	 * @param depth the ply of the node
+	 * @param left plies left to search below this node
+	 * @param alpha the alpha element of alpha-beta pruning
+	 * @param beta the beta element of alpha-beta pruning
+	 * @param mustFinish true if only stop() may cut this iteration short
+	 * @param afterNull true if this node was reached by a null move
+	 * @return the score of the position for color
+	 */
+	private int minimax(int color, int depth, int left, int alpha, int beta, boolean mustFinish, boolean afterNull) {
+		Board b = board;
+
+		SearchStats st = stats;
+		long n = ++st.nodes;
+		if((n & CLOCK_INTERVAL) == 0 && outOfTime(mustFinish)) {
+			aborted = true;
+		}
+		if(aborted) {
+			return 0;
+		}
+		boolean timed = SearchStats.timed(n);
+		if(left <= 0) {
+			return quiesce(color, depth, alpha, beta, quiescenceDepth, mustFinish, timed);
+		}
+		st.victoryChecks++;
+		long t = timed ? System.nanoTime() : 0;
+		boolean over = b.black.victory() || b.white.victory();
+		if(timed) {
+			st.victoryNanos += System.nanoTime() - t;
+		}
+		if(over) {
+			return score(b, color, timed);
+		}
+
+		int symmetry = b.symmetry(); //Mirror images share their table entries
+		long key = b.hashKey(color, symmetry);
+		long entry = table.probe(key);
+		st.tableProbes++;
+		if(entry != TranspositionTable.MISS) {
+			st.tableHits++;
+		}
+		int alphaOrig = alpha;
+		if(depth > 0 && entry != TranspositionTable.MISS
+				&& TranspositionTable.depth(entry) >= left) {
+			int score = TranspositionTable.score(entry);
+			int bound = TranspositionTable.bound(entry);
+			if(bound == TranspositionTable.EXACT) {
+				return score;
+			} else if(bound == TranspositionTable.LOWER && score > alpha) {
+				alpha = score;
+			} else if(bound == TranspositionTable.UPPER && score < beta) {
+				beta = score;
+			}
+			if(alpha >= beta) {
+				return score;
+			}
+		}
+		int[] moves = moveBuffers[depth];
+		int[] keys = keyBuffers[depth];
+		int threatened = -1; //1 if the opponent could complete a network now, 0 if not, -1 until first needed
+		if(nullMove && !afterNull && depth > 0 && beta - alpha == 1 && beta < Integer.MAX_VALUE
+				&& left > NULL_MOVE_REDUCTION) {
+			threatened = b.winningMoves(1 - color, moves) > 0 ? 1 : 0;
+		}
+		if(threatened == 0) {
+			int score = -minimax(1 - color, depth + 1, left - 1 - NULL_MOVE_REDUCTION, -beta, -beta + 1, mustFinish, true);
+			if(aborted) {
+				return 0;
+			}
+			if(score >= beta) {
+				st.nullMoveCutoffs++;
+				return beta; //Not score: a win found without moving proves nothing
+			}
+		}
+		int bestScore = -Integer.MAX_VALUE;
+		int bestMove = 0;
+
+		if(timed) {
+			t = System.nanoTime();
+		}
+		int count = b.generateMoves(color, moves);
+		if(timed) {
+			st.generateNanos += System.nanoTime() - t;
+		}
+		orderMoves(moves, keys, count, color, depth, Board.mirrorMove(TranspositionTable.move(entry), symmetry));
+		for(int i = 0; i < count; i++) {
+			int m = pickMove(moves, keys, count, i);
+			boolean late = reductions && i >= REDUCE_AFTER && left > LATE_MOVE_REDUCTION
+					&& keys[i] < Integer.MAX_VALUE - 2; //Not the hash move or a killer
+			if(late && threatened < 0) {
+				threatened = b.winningMoves(1 - color, moveBuffers[depth+1]) > 0 ? 1 : 0; //moves is in use
+			}
+			b.makeMove(m, color);
+			int score;
+			if(i == 0) {
+				score = -minimax((color+1)%2, depth+1, left-1, -beta, -alpha, mustFinish, false);
+			} else {
+				int reduction = 0;
+				if(late && threatened == 0 && b.winningMoves(color, moveBuffers[depth+1]) == 0) {
+					reduction = LATE_MOVE_REDUCTION;
+					st.reductions++;
+				}
+				score = -minimax((color+1)%2, depth+1, left-1-reduction, -alpha - 1, -alpha, mustFinish, false);
+				if(reduction > 0 && score > alpha && !aborted) {
+					st.reductionResearches++;
+					score = -minimax((color+1)%2, depth+1, left-1, -alpha - 1, -alpha, mustFinish, false);
+				}
+				if(score > alpha && score < beta && !aborted) {
+					st.researches++;
+					score = -minimax((color+1)%2, depth+1, left-1, -beta, -alpha, mustFinish, false);
+				}
+			}
+			b.undoMove(m, color);
+			if(aborted) {
+				return 0;
+			}
+			if(i == 0 || score > bestScore){
+				bestScore = score;
+				bestMove = m;
+				if(depth == 0) {
+					rootMove = m;
+				}
+				if(bestScore > alpha) {
+					alpha = bestScore;
+				}
+			}
+			if(alpha >= beta) {
+				recordCutoff(m, color, depth, left);
+				st.cutoffs++;
+				st.cutoffsAtPly[depth]++;
+				if(i == 0) {
+					st.firstMoveCutoffs++;
+				}
+				break;
+			}
+		}
+
+		int bound = TranspositionTable.EXACT;
+		if(bestScore <= alphaOrig) {
+			bound = TranspositionTable.UPPER;
+		} else if(bestScore >= beta) {
+			bound = TranspositionTable.LOWER;
+		}
+		table.store(key, left, bound, bestScore, Board.mirrorMove(bestMove, symmetry));
+		return bestScore;
+	}
+
+	/**
+	 * Searches past the horizon until the position is quiet, meaning neither player
+	 * can complete a network on its next move, and then evaluates it. A player that
+	 * can complete one wins; a player whose opponent could complete one may only play
+	 * moves that might stop it, and loses if none does. Quiet positions and positions
+	 * more than left plies past the horizon are scored by evaluate() as they stand.
+	 *
+	 * Those scores, and wins, are kept in the evaluation cache, since finding the
+	 * threats costs far more than evaluate(). With no plies left, evaluate() alone is
+	 * cheaper than a lookup, so the cache is not used.
+	 *
+	 * @param color the color of the player to move
+	 * @param depth the ply of the node
+	 * @param alpha the alpha element of alpha-beta pruning
+	 * @param beta the beta element of alpha-beta pruning
+	 * @param left plies that may still be searched
+	 * @param mustFinish true if only stop() may cut this iteration short
+	 * @param timed true to add the time taken to evaluate the node to stats
+	 * @return the score of the position for color
+	 */
+	private int quiesce(int color, int depth, int alpha, int beta, int left, boolean mustFinish, boolean timed) {
+		Board b = board;
+		SearchStats st = stats;
+		if(left == 0) {
+			return score(b, color, timed);
+		}
+		long key = b.canonicalKey(color);
+		EvaluationCache ec = cache;
+		if(ec != null) {
+			st.cacheProbes++;
+			long entry = ec.probe(key);
+			if(entry != EvaluationCache.MISS) {
+				st.cacheHits++;
+				return EvaluationCache.score(entry);
+			}
+		}
+		if(b.hasNetwork(Board.BLACK) || b.hasNetwork(Board.WHITE)) {
+			return cached(key, score(b, color, timed)); //evaluate() scores the networks itself
+		}
+		if((++scans & SCAN_CLOCK_INTERVAL) == 0 && outOfTime(mustFinish)) {
+			aborted = true;
+			return 0;
+		}
+		int[] moves = moveBuffers[depth];
+		if(b.winningMoves(color, moves) > 0) {
+			return cached(key, Integer.MAX_VALUE);
+		}
+		int threats = b.winningMoves(1 - color, moves);
+		if(threats == 0) {
+			return cached(key, score(b, color, timed));
+		}
+		long blocks = b.blockingSquares(1 - color, moves, threats);
+		int count = b.generateMoves(color, moves);
+		int bestScore = -Integer.MAX_VALUE; //No stand-pat: a move that blocks nothing loses
+		for(int i = 0; i < count; i++) {
+			int m = moves[i];
+			if((blocks & (1L << ((m >>> 6) & 0x3F))) == 0) {
+				continue;
+			}
+			long n = ++st.nodes;
+			st.quiescenceNodes++;
+			if((n & CLOCK_INTERVAL) == 0 && outOfTime(mustFinish)) {
+				aborted = true;
+				return 0;
+			}
+			b.makeMove(m, color);
+			int score = -quiesce(1 - color, depth + 1, -beta, -alpha, left - 1, mustFinish, SearchStats.timed(n));
+			b.undoMove(m, color);
+			if(aborted) {
+				return 0;
+			}
+			if(score > bestScore) {
+				bestScore = score;
+				if(bestScore > alpha) {
+					alpha = bestScore;
+				}
+				if(alpha >= beta) {
+					break;
+				}
+			}
+		}
+		return bestScore;
+	}
+
+	/**
+	 * Gives each of the encoded moves an ordering key in keys: the hash move first,
+	 * then the killer moves for this ply, then the rest by their history score.
+	 * @param moves the generated moves
+	 * @param keys array to fill with the ordering key of each move
+	 * @param count number of moves
+	 * @param color the player to move
+	 * @param depth the ply of the node
+	 * @param hashMove the best move stored for this position, as Board.encode(); 0 if none
+	 */
+	private void orderMoves(int[] moves, int[] keys, int count, int color, int depth, int hashMove) {
+		for(int i = 0; i < count; i++) {
+			int code = moves[i];
+			if(code == hashMove) {
+				keys[i] = Integer.MAX_VALUE;
+			} else if(code == killers[depth][0]) {
+				keys[i] = Integer.MAX_VALUE - 1;
+			} else if(code == killers[depth][1]) {
+				keys[i] = Integer.MAX_VALUE - 2;
+			} else {
+				keys[i] = history[color][code];
+			}
+		}
+	}
+
+	/**
+	 * Swaps the move with the highest key in moves[i..count) into index i and returns it.
+	 * Selecting lazily is cheaper than sorting since most nodes cut off early.
+	 */
+	private int pickMove(int[] moves, int[] keys, int count, int i) {
+		int best = i;
+		for(int j = i + 1; j < count; j++) {
+			if(keys[j] > keys[best]) {
+				best = j;
+			}
+		}
+		int m = moves[best];
+		moves[best] = moves[i];
+		moves[i] = m;
+		int k = keys[best];
+		keys[best] = keys[i];
+		keys[i] = k;
+		return m;
+	}
+
+	/**
+	 * Records that the encoded move code caused a cutoff at ply depth, with left plies
+	 * below it: it becomes a killer for that ply and gains history in proportion to
+	 * the depth it refuted.
+	 */
+	private void recordCutoff(int code, int color, int depth, int left) {
+		if(killers[depth][0] != code) {
+			killers[depth][1] = killers[depth][0];
+			killers[depth][0] = code;
+		}
+		history[color][code] += left * left;
+		if(history[color][code] > HISTORY_MAX) {
+			ageHistory();
+		}
+	}
+
+	/**
+	 * Halves every history score so that older cutoffs count for less.
+	 */
+	private void ageHistory() {
+		for(int c = 0; c < 2; c++) {
+			for(int i = 0; i < HISTORY_SIZE; i++) {
+				history[c][i] /= 2;
+			}
+		}
+	}
+
+	/**
+	 * Stores score in the evaluation cache, if there is one, and returns it. Only
+	 * values that do not depend on the window or on the plies left are stored.
+	 * @param key the hash key of the position, color to move
+	 */
+	private int cached(long key, int score) {
+		if(cache != null) {
+			cache.store(key, score);
+		}
+		return score;
+	}
+
+	/**
+	 * Returns the static evaluation of b from the point of view of color.
+	 * @param b the board to evaluate
+	 * @param color the player whose point of view is taken
+	 * @param timed true to add the time taken to stats
+	 */
+	private int score(Board b, int color, boolean timed) {
+		stats.evaluations++;
+		int score;
+		if(timed) {
+			long t = System.nanoTime();
+			score = b.evaluate();
+			stats.evaluateNanos += System.nanoTime() - t;
+		} else {
+			score = b.evaluate();
+		}
+		if(color == Board.BLACK) {
+			return -score;
+		}
+		return score;
+	}
+}
@@ -0,0 +1,418 @@
+/* Tournament.java */
+
+package player;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ *  Plays many games between two players without the referee's window, several
+ *  at a time, and reports how they did, to tell whether a change to a player
+ *  makes it stronger.
+ *
+ *  Usage: java player.Tournament [-games N] [-threads T] [-opening P] [-plies L] [-seed S] A B
+ *
+ *  A and B are either "machine", a MachinePlayer, optionally followed by settings
+ *  as in "machine:time=200,quiescence=0" (see Entrant for the keys), or the name
+ *  of a class extending Player with a constructor taking the color. Each game
+ *  gets fresh players.
+ *
+ *  Games come in pairs that start from the same random opening of P plies (4 by
+ *  default), with A playing White in one and Black in the other, so that neither
+ *  the opening nor the first move favors a side. T games (one per core by
+ *  default) are played at once; with timed players, more than one per core
+ *  takes time from their searches. The runner referees on its own board: a
+ *  player that makes an illegal move, quits, throws, or refuses a legal move of
+ *  its opponent's loses, a move that completes networks for both players loses
+ *  for the player who made it, and a game still going after L plies (200 by
+ *  default) is a draw.
+ *
+ *  The report gives games per second, A's score with a 95% confidence interval
+ *  and the Elo difference it implies, and percentiles of the time each player
+ *  took per move.
+ */
+public class Tournament {
+
+	static final int A = 0; //Index of the first player named on the command line
+	static final int B = 1;
+	static final int DRAW = -1;
+
+	private int games = 100;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private int openingPlies = 4; //Random plies played before the players take over
+	private int maxPlies = 200; //Plies after which a game is a draw
+	private long seed = 1;
+	private Entrant[] entrants = new Entrant[2];
+
+	/**
+	 * The result of one game.
+	 */
+	static class Game {
+		int winner = DRAW; //A, B or DRAW
+		String forfeit; //Why the loser lost other than by a network; null if it did not
+		long[][] latencies = new long[2][16]; //Per entrant, nanoseconds per chooseMove
+		int[] moves = new int[2]; //Per entrant, number of latencies recorded
+
+		void record(int entrant, long nanos) {
+			if(moves[entrant] == latencies[entrant].length) {
+				latencies[entrant] = Arrays.copyOf(latencies[entrant], 2 * moves[entrant]);
+			}
+			latencies[entrant][moves[entrant]++] = nanos;
+		}
+	}
+
+	/**
+	 * A kind of player, as named on the command line, and the way to make one.
+	 *
+	 * For "machine", the settings after the colon are, comma separated:
+	 * depth=D (a player made by the constructor taking a search depth, which
+	 * searches exactly D plies), time=MS (per move; the default is
+	 * MachinePlayer.DEFAULT_MOVE_TIME), threads=N, hash=MB, cache=MB (0 turns
+	 * it off), quiescence=PLIES, solver=NODES (0 turns it off), book=FILE (or
+	 * "none"), ponder=true, nullmove=false and lmr=false.
+	 */
+	static class Entrant {
+		final String spec;
+		private final String name; //"machine" or a class name
+		private final String[][] settings; //key, value pairs
+
+		/**
+		 * @throws IllegalArgumentException if spec cannot be read
+		 */
+		Entrant(String spec) {
+			this.spec = spec;
+			int colon = spec.indexOf(':');
+			name = colon < 0 ? spec : spec.substring(0, colon);
+			String[] pairs = colon < 0 ? new String[0] : spec.substring(colon + 1).split(",");
+			settings = new String[pairs.length][];
+			for(int i = 0; i < pairs.length; i++) {
+				settings[i] = pairs[i].split("=", 2);
+				if(settings[i].length != 2) {
+					throw new IllegalArgumentException("Bad setting " + pairs[i] + " in " + spec);
+				}
+			}
+			if(!name.equals("machine") && settings.length > 0) {
+				throw new IllegalArgumentException("Only machine players take settings: " + spec);
+			}
+			finish(create(Board.WHITE)); //Fail now rather than in the middle of the tournament
+		}
+
+		/**
+		 * Returns a new player of this kind for color.
+		 */
+		Player create(int color) {
+			if(!name.equals("machine")) {
+				try {
+					return (Player)Class.forName(name).getConstructor(int.class).newInstance(color);
+				} catch(ReflectiveOperationException | ClassCastException e) {
+					throw new IllegalArgumentException("Cannot make a player of class " + name + ": " + e);
+				}
+			}
+			int depth = -1; //Set by a depth setting, which picks the fixed-depth constructor
+			for(String[] setting : settings) {
+				if(setting[0].equals("depth")) {
+					try {
+						depth = Integer.parseInt(setting[1]);
+					} catch(NumberFormatException e) {
+						throw new IllegalArgumentException("Bad setting depth=" + setting[1] + " in " + spec);
+					}
+				}
+			}
+			//Make only the player we keep: a constructor may start a ponder thread or register an MBean
+			MachinePlayer p = depth >= 0 ? new MachinePlayer(color, depth) : new MachinePlayer(color);
+			for(String[] setting : settings) {
+				String key = setting[0];
+				String value = setting[1];
+				try {
+					if(key.equals("depth")) {
+						//Chose the constructor above
+					} else if(key.equals("time")) {
+						p.setMoveTime(Long.parseLong(value));
+					} else if(key.equals("threads")) {
+						p.setThreads(Integer.parseInt(value));
+					} else if(key.equals("hash")) {
+						p.setHashSize(Integer.parseInt(value));
+					} else if(key.equals("cache")) {
+						p.setCacheSize(Integer.parseInt(value));
+					} else if(key.equals("quiescence")) {
+						p.setQuiescenceDepth(Integer.parseInt(value));
+					} else if(key.equals("solver")) {
+						p.setSolver(Integer.parseInt(value), MachinePlayer.DEFAULT_SOLVE_MOVES);
+					} else if(key.equals("book")) {
+						p.setOpeningBook(value.equals("none") ? null : OpeningBook.open(value));
+					} else if(key.equals("ponder")) {
+						p.setPondering(Boolean.parseBoolean(value));
+					} else if(key.equals("nullmove")) {
+						p.setNullMovePruning(Boolean.parseBoolean(value));
+					} else if(key.equals("lmr")) {
+						p.setLateMoveReductions(Boolean.parseBoolean(value));
+					} else {
+						throw new IllegalArgumentException("Unknown setting " + key + " in " + spec);
+					}
+				} catch(NumberFormatException | IOException e) {
+					throw new IllegalArgumentException("Bad setting " + key + "=" + value + " in " + spec);
+				}
+			}
+			return p;
+		}
+
+		/**
+		 * Releases the threads a player made by create() may hold.
+		 */
+		static void finish(Player p) {
+			if(p instanceof MachinePlayer) {
+				((MachinePlayer)p).setPondering(false);
+				((MachinePlayer)p).setThreads(1);
+			}
+		}
+	}
+
+	/**
+	 * Plays all the games and returns their results, in order.
+	 */
+	List<Game> run() throws InterruptedException, ExecutionException {
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<Game>> futures = new ArrayList<Future<Game>>();
+			for(int n = 0; n < games; n++) {
+				final int[] opening = opening(n / 2);
+				final int white = n % 2 == 0 ? A : B; //Entrant playing White
+				futures.add(pool.submit(new Callable<Game>() {
+					public Game call() {
+						return play(opening, white);
+					}
+				}));
+			}
+			List<Game> results = new ArrayList<Game>();
+			int step = Math.max(games / 10, 1);
+			for(Future<Game> f : futures) {
+				results.add(f.get());
+				if(results.size() % step == 0 && results.size() < games) {
+					System.err.println(results.size() + " games played");
+				}
+			}
+			return results;
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Returns the random opening, as encoded moves with White first, of the pair of
+	 * games with the given number.
+	 */
+	int[] opening(int pair) {
+		Random random = new Random(seed * 1000003 + pair);
+		Board b = BookBuilder.replay(new int[0]);
+		int[] line = new int[openingPlies];
+		int[] moves = new int[Board.MAX_MOVES];
+		int color = Board.WHITE;
+		for(int i = 0; i < openingPlies; i++) {
+			int count = b.generateMoves(color, moves);
+			line[i] = moves[random.nextInt(count)];
+			b.makeMove(line[i], color);
+			color = 1 - color;
+		}
+		return line;
+	}
+
+	/**
+	 * Plays one game from opening, with entrant white playing White.
+	 */
+	Game play(int[] opening, int white) {
+		Game game = new Game();
+		Player[] players = new Player[2]; //Indexed by color
+		int[] entrant = new int[2]; //Entrant playing each color
+		entrant[Board.WHITE] = white;
+		entrant[Board.BLACK] = 1 - white;
+		try {
+			for(int color = 0; color < 2; color++) {
+				players[color] = entrants[entrant[color]].create(color);
+			}
+			Board referee = BookBuilder.replay(opening);
+			int color = Board.WHITE;
+			for(int i = 0; i < opening.length; i++) {
+				Move m = Board.decode(opening[i]);
+				players[color].forceMove(m);
+				players[1 - color].opponentMove(m);
+				color = 1 - color;
+			}
+			for(int ply = opening.length; ply < maxPlies; ply++) {
+				int other = 1 - color;
+				Move m;
+				long start = System.nanoTime();
+				try {
+					m = players[color].chooseMove();
+				} catch(RuntimeException e) {
+					return forfeit(game, entrant[color], "threw " + e);
+				}
+				game.record(entrant[color], System.nanoTime() - start);
+				if(m == null || m.moveKind == Move.QUIT) {
+					return forfeit(game, entrant[color], "quit");
+				} else if(!referee.isLegalMove(m, color)) {
+					return forfeit(game, entrant[color], "made the illegal move " + m);
+				}
+				referee.makeMove(m, color);
+				if(referee.hasNetwork(other)) { //Even if the move completed one for the mover too
+					game.winner = entrant[other];
+					return game;
+				} else if(referee.hasNetwork(color)) {
+					game.winner = entrant[color];
+					return game;
+				}
+				boolean accepted;
+				try {
+					accepted = players[other].opponentMove(m);
+				} catch(RuntimeException e) {
+					return forfeit(game, entrant[other], "threw " + e);
+				}
+				if(!accepted) {
+					return forfeit(game, entrant[other], "refused the legal move " + m);
+				}
+				color = other;
+			}
+			return game;
+		} finally {
+			for(Player p : players) {
+				if(p != null) {
+					Entrant.finish(p);
+				}
+			}
+		}
+	}
+
+	private static Game forfeit(Game game, int loser, String reason) {
+		game.winner = 1 - loser;
+		game.forfeit = (loser == A ? "A " : "B ") + reason;
+		return game;
+	}
+
+	/**
+	 * Prints the summary of results, games that took seconds in all.
+	 */
+	void report(List<Game> results, double seconds) {
+		int[] wins = new int[2];
+		int draws = 0;
+		int forfeits = 0;
+		for(Game g : results) {
+			if(g.winner == DRAW) {
+				draws++;
+			} else {
+				wins[g.winner]++;
+			}
+			if(g.forfeit != null) {
+				if(forfeits++ < 5) {
+					System.out.println("forfeit: " + g.forfeit);
+				}
+			}
+		}
+		int n = results.size();
+		System.out.println("A = " + entrants[A].spec);
+		System.out.println("B = " + entrants[B].spec);
+		System.out.printf("%d games in %.1f s (%.2f games/s) on %d threads, %d forfeited%n",
+				n, seconds, n / seconds, threads, forfeits);
+
+		double score = (wins[A] + 0.5 * draws) / n;
+		double variance = (wins[A] * Math.pow(1 - score, 2) + draws * Math.pow(0.5 - score, 2)
+				+ wins[B] * Math.pow(score, 2)) / n;
+		double margin = 1.96 * Math.sqrt(variance / n);
+		System.out.printf("A wins %d, B wins %d, draws %d: A scores %.1f%% +- %.1f%%, Elo %s [%s, %s]%n",
+				wins[A], wins[B], draws, 100 * score, 100 * margin,
+				elo(score), elo(score - margin), elo(score + margin));
+
+		System.out.println("ms per move      p50      p90      p99      max   moves");
+		for(int e = 0; e < 2; e++) {
+			long[] all = latencies(results, e);
+			System.out.printf("%s          %8.1f %8.1f %8.1f %8.1f %7d%n", e == A ? "A" : "B",
+					percentile(all, 0.5), percentile(all, 0.9), percentile(all, 0.99),
+					percentile(all, 1), all.length);
+		}
+	}
+
+	/**
+	 * Returns the Elo difference at which the expected score is score, rounded.
+	 */
+	static String elo(double score) {
+		if(score <= 0) {
+			return "-inf";
+		} else if(score >= 1) {
+			return "+inf";
+		}
+		return String.format("%+d", Math.round(-400 * Math.log10(1 / score - 1)));
+	}
+
+	/**
+	 * Returns the latencies of entrant over all the games, sorted.
+	 */
+	static long[] latencies(List<Game> results, int entrant) {
+		int total = 0;
+		for(Game g : results) {
+			total += g.moves[entrant];
+		}
+		long[] all = new long[total];
+		int i = 0;
+		for(Game g : results) {
+			System.arraycopy(g.latencies[entrant], 0, all, i, g.moves[entrant]);
+			i += g.moves[entrant];
+		}
+		Arrays.sort(all);
+		return all;
+	}
+
+	/**
+	 * Returns the q-th quantile, in milliseconds, of the sorted latencies; 0 if none.
+	 */
+	static double percentile(long[] sorted, double q) {
+		if(sorted.length == 0) {
+			return 0;
+		}
+		int i = (int)Math.ceil(q * sorted.length) - 1;
+		return sorted[Math.max(Math.min(i, sorted.length - 1), 0)] / 1e6;
+	}
+
+	public static void main(String[] args) throws Exception {
+		Tournament t = new Tournament();
+		int i = 0;
+		try {
+			for(; i < args.length - 2; i += 2) {
+				if(args[i].equals("-games")) {
+					t.games = Math.max(Integer.parseInt(args[i+1]), 1);
+				} else if(args[i].equals("-threads")) {
+					t.threads = Math.max(Integer.parseInt(args[i+1]), 1);
+				} else if(args[i].equals("-opening")) {
+					t.openingPlies = Math.max(Integer.parseInt(args[i+1]), 0);
+				} else if(args[i].equals("-plies")) {
+					t.maxPlies = Integer.parseInt(args[i+1]);
+				} else if(args[i].equals("-seed")) {
+					t.seed = Long.parseLong(args[i+1]);
+				} else {
+					break;
+				}
+			}
+			if(i == args.length - 2 && !args[i].startsWith("-")) {
+				t.entrants[A] = new Entrant(args[i]);
+				t.entrants[B] = new Entrant(args[i+1]);
+			}
+		} catch(IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			t.entrants[A] = null;
+		}
+		if(t.entrants[A] == null || t.entrants[B] == null) {
+			System.err.println("Usage: java player.Tournament [-games N] [-threads T] [-opening P] [-plies L] [-seed S] A B");
+			System.err.println("  A, B: machine[:depth=D,time=MS,threads=N,hash=MB,cache=MB,quiescence=P,solver=NODES,book=FILE,ponder=true,nullmove=B,lmr=B]");
+			System.err.println("        or the name of a Player class with a constructor taking the color");
+			System.exit(1);
+		}
+		long start = System.nanoTime();
+		List<Game> results = t.run();
+		t.report(results, (System.nanoTime() - start) / 1e9);
+	}
+}
@@ -0,0 +1,188 @@
+/* TranspositionTable.java */
+
+package player;
+
+/**
+ *  A fixed-size table of search results keyed by Board.canonicalKey(), so that a
+ *  position and its mirror images share an entry. Each entry records the remaining
+ *  search depth, the kind of bound, the score (relative to the side to move) and the
+ *  best move found (as Board.encode(), in the canonical orientation).
+ *
+ *  The table is split into buckets of two slots. A result is stored over an entry for
+ *  the same position if there is one; otherwise it replaces whichever slot is left over
+ *  from an older search, or failing that, the one searched to the lesser depth.
+ *
+ *  Several search threads may share one table without locking. Each slot stores its
+ *  key XORed with its data, so a slot read while another thread was half way through
+ *  writing it does not match any key and is treated as a miss.
+ */
+public class TranspositionTable {
+
+	public static final int EXACT = 1; //score is the exact minimax value
+	public static final int LOWER = 2; //score is a lower bound (search failed high)
+	public static final int UPPER = 3; //score is an upper bound (search failed low)
+	public static final long MISS = 0; //returned by probe() if the position is not stored
+
+	private static final int ENTRY_BYTES = 16; //one key and one data long per entry
+
+	/*
+	 * Layout of a data long:
+	 * bits 0-7 remaining depth, 8-9 bound, 10-15 generation, 16-31 move, 32-63 score.
+	 * A stored entry always has a nonzero bound, so no entry equals MISS.
+	 */
+	private long[] keys; //key ^ data of each slot
+	private long[] data;
+	private int mask; //number of slots - 1; slot count is a power of two
+	private int generation; //incremented at the start of every search
+
+	/**
+	 * Creates a table that uses at most megabytes MB of memory.
+	 * @param megabytes	memory cap for the table; at least one bucket is always allocated
+	 */
+	public TranspositionTable(int megabytes) {
+		long slots = ((long)megabytes << 20) / ENTRY_BYTES;
+		int size = 2;
+		while((long)size * 2 <= slots && size < (1 << 30)) {
+			size *= 2;
+		}
+		keys = new long[size];
+		data = new long[size];
+		mask = size - 1;
+	}
+
+	/**
+	 * Marks the start of a new search. Entries from earlier searches are kept but are
+	 * the first to be replaced.
+	 */
+	public void newSearch() {
+		generation = (generation + 1) & 0x3F;
+	}
+
+	/**
+	 * Removes all entries from the table.
+	 */
+	public void clear() {
+		for(int i = 0; i < keys.length; i++) {
+			keys[i] = 0;
+			data[i] = 0;
+		}
+	}
+
+	/**
+	 * Returns the number of entries this table can hold.
+	 */
+	public int capacity() {
+		return keys.length;
+	}
+
+	/**
+	 * Looks up the position with hash key.
+	 * @param key	hash of the position and side to move
+	 * @return		the packed entry for key, or MISS if it is not stored
+	 */
+	public long probe(long key) {
+		int i = (int)key & mask & ~1;
+		long entry = data[i];
+		if((keys[i] ^ entry) == key && entry != MISS) {
+			return entry;
+		}
+		entry = data[i+1];
+		if((keys[i+1] ^ entry) == key && entry != MISS) {
+			return entry;
+		}
+		return MISS;
+	}
+
+	/**
+	 * Records a search result.
+	 * @param key	hash of the position and side to move
+	 * @param depth	remaining depth the position was searched to
+	 * @param bound	EXACT, LOWER or UPPER
+	 * @param score	score of the position for the side to move
+	 * @param move	best move found, as Board.encode(); 0 if none
+	 */
+	public void store(long key, int depth, int bound, int score, int move) {
+		int i = (int)key & mask & ~1;
+		long first = data[i];
+		long second = data[i+1];
+		int slot;
+		long old;
+		if((keys[i] ^ first) == key) {
+			slot = i;
+			old = first;
+		} else if((keys[i+1] ^ second) == key) {
+			slot = i+1;
+			old = second;
+		} else if(worth(first) <= worth(second)) {
+			slot = i;
+			old = MISS;
+		} else {
+			slot = i+1;
+			old = MISS;
+		}
+		if(old != MISS) {
+			if(generation(old) == generation && depth(old) > depth && bound != EXACT) {
+				return; //Keep the deeper result from this search
+			}
+			if(move == 0) {
+				move = move(old); //Keep the best move we already knew
+			}
+		}
+		long entry = pack(depth, bound, score, move);
+		keys[slot] = key ^ entry;
+		data[slot] = entry;
+	}
+
+	/**
+	 * Returns how much an entry is worth keeping; empty entries and entries from older
+	 * searches are worth the least.
+	 */
+	private int worth(long entry) {
+		if(entry == MISS) {
+			return -1;
+		} else if(generation(entry) != generation) {
+			return depth(entry);
+		}
+		return depth(entry) + 256;
+	}
+
+	/**
+	 * Packs the fields of an entry into a data long.
+	 */
+	private long pack(int depth, int bound, int score, int move) {
+		return ((long)score << 32) | ((long)(move & 0xFFFF) << 16) | ((long)generation << 10)
+				| ((long)bound << 8) | (depth & 0xFF);
+	}
+
+	private int generation(long entry) {
+		return (int)(entry >>> 10) & 0x3F;
+	}
+
+	/**
+	 * Returns the remaining depth stored in entry.
+	 */
+	public static int depth(long entry) {
+		return (int)entry & 0xFF;
+	}
+
+	/**
+	 * Returns the bound type (EXACT, LOWER or UPPER) stored in entry.
+	 */
+	public static int bound(long entry) {
+		return (int)(entry >>> 8) & 0x3;
+	}
+
+	/**
+	 * Returns the best move stored in entry, as Board.encode(); 0 if none.
+	 */
+	public static int move(long entry) {
+		return (int)(entry >>> 16) & 0xFFFF;
+	}
+
+	/**
+	 * Returns the score stored in entry.
+	 */
+	public static int score(long entry) {
+		return (int)(entry >>> 32);
+	}
+}